@@ -0,0 +1,233 @@
+import benchmarks.Solvers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+
+/**
+ * Gives the benchmarks access to the solvers, see Solvers.
+ * @author Max Jappert
+ */
+public class SolverBridge implements Solvers {
+
+    @Override
+    public Object trainKuhn(boolean mccfr, boolean indexedStore, int iterations) {
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(mccfr, indexedStore);
+            kp.train(iterations);
+            return kp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object trainKuhn(String precision, String rule, int iterations) {
+        UpdateRule updateRule;
+
+        switch (rule) {
+            case "cfr+":
+                updateRule = UpdateRule.cfrPlus();
+                break;
+            case "dcfr":
+                updateRule = UpdateRule.discounted(1.5, 0, 2);
+                break;
+            default:
+                updateRule = UpdateRule.VANILLA;
+        }
+
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.CFR, Precision.valueOf(precision), updateRule);
+            kp.train(iterations);
+            return kp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object trainKuhn(String algorithm, int numCards, int iterations) {
+        KuhnPokerCFR.Algorithm trainingAlgorithm = KuhnPokerCFR.Algorithm.valueOf(algorithm);
+        boolean sampled = trainingAlgorithm == KuhnPokerCFR.Algorithm.OUTCOME_SAMPLING
+                || trainingAlgorithm == KuhnPokerCFR.Algorithm.EXTERNAL_SAMPLING;
+
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(trainingAlgorithm, Precision.FLOAT,
+                    sampled ? UpdateRule.VANILLA : UpdateRule.cfrPlus(), numCards);
+            kp.train(iterations);
+            return kp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object trainKuhnPruned(int numCards, int iterations, boolean pruning) {
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.CFR, Precision.FLOAT, UpdateRule.VANILLA, numCards);
+            kp.setPruning(pruning);
+            kp.train(iterations);
+            return kp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object trainKuhnHogwild(String algorithm, int iterations, int workers, ExecutorService executor) {
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.valueOf(algorithm), true, UpdateRule.VANILLA);
+            kp.trainHogwild(iterations, workers, executor);
+            return kp;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public float maxStrategyDifference(Object trainer, Object other, int player) {
+        return ((KuhnPokerCFR) trainer).maxStrategyDifference((KuhnPokerCFR) other, player);
+    }
+
+    @Override
+    public double bytesPerInfoSet(Object trainer) {
+        return ((IndexedInfoSetStore) ((KuhnPokerCFR) trainer).store).bytesPerInfoSet();
+    }
+
+    @Override
+    public float exploitability(Object trainer) {
+        return ((KuhnPokerCFR) trainer).exploitability();
+    }
+
+    @Override
+    public int iterateKuhn(Object trainer, int iteration) {
+        KuhnPokerCFR kp = (KuhnPokerCFR) trainer;
+        long before = kp.nodesVisited;
+
+        try {
+            kp.iterate(iteration, 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return (int) (kp.nodesVisited - before);
+    }
+
+    @Override
+    public Object newStore(boolean indexedStore) {
+        return indexedStore
+                ? new ArrayInfoSetStore(KuhnPokerCFR.DEFAULT_NUM_CARDS, KuhnPokerCFR.numHistories)
+                : new MapInfoSetStore();
+    }
+
+    @Override
+    public int getIndex(Object store, int card, int depth, int bits) {
+        return ((InfoSetStore) store).getIndex(card, depth, bits);
+    }
+
+    @Override
+    public Object trainRockPaperScissors(int iterations) {
+        RockPaperScissorsCFR rps = new RockPaperScissorsCFR();
+        rps.train(iterations);
+        return rps;
+    }
+
+    @Override
+    public float[][] colonelBlotto(int soldiers, int fields) {
+        return MatrixGameCFR.colonelBlotto(soldiers, fields);
+    }
+
+    @Override
+    public int solveMatrixGame(float[][] payoffs, boolean sampled, float targetExploitability) {
+        MatrixGameCFR game = new MatrixGameCFR(payoffs,
+                sampled ? MatrixGameCFR.Mode.SAMPLED : MatrixGameCFR.Mode.FULL_WIDTH, UpdateRule.cfrPlus());
+        game.trainUntil(targetExploitability, Long.MAX_VALUE, 100);
+        return game.nIterations;
+    }
+
+    @Override
+    public float[][][] perturbedRockPaperScissors(int numGames, float noise, long seed) {
+        return BatchMatrixGameCFR.perturbedRockPaperScissors(numGames, noise, seed);
+    }
+
+    @Override
+    public Object solveMatrixGames(float[][][] payoffs, boolean batch, int iterations) {
+        if (batch) {
+            BatchMatrixGameCFR games = new BatchMatrixGameCFR(payoffs);
+            games.train(iterations);
+            return games.getAverageStrategies(0);
+        }
+
+        float[][] averageStrategies = new float[payoffs.length][];
+
+        for (int g = 0; g < payoffs.length; g++) {
+            MatrixGameCFR game = new MatrixGameCFR(payoffs[g]);
+            game.train(iterations);
+            averageStrategies[g] = game.getAverageStrategy(0);
+        }
+
+        return averageStrategies;
+    }
+
+    @Override
+    public Object freezePolicy(Object trainer) {
+        KuhnPokerCFR kp = (KuhnPokerCFR) trainer;
+        return FrozenPolicy.freeze(kp.store, kp.numCards);
+    }
+
+    @Override
+    public int[] decisionIds(Object policy) {
+        FrozenPolicy frozen = (FrozenPolicy) policy;
+        return IntStream.range(0, frozen.numCards() * KuhnPokerCFR.numHistories).filter(frozen::isDecision).toArray();
+    }
+
+    @Override
+    public String infoSetKey(Object policy, int id) {
+        return ((FrozenPolicy) policy).infoSetString(id);
+    }
+
+    @Override
+    public int sampleFrozen(Object policy, int id, SplittableRandom random) {
+        return ((FrozenPolicy) policy).sample(id, random);
+    }
+
+    @Override
+    public Object infoSetMap(Object trainer) {
+        return ((KuhnPokerCFR) trainer).getInfoSetMap();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int sampleFromMap(Object iMap, String key) {
+        float[] strategy = ((Map<String, InformationSet>) iMap).get(key).getAverageStrategy();
+        return new Random().nextFloat() < strategy[0] ? 0 : 1;
+    }
+
+    @Override
+    public Object newGame(int trainingIterations) {
+        try {
+            KuhnPokerCFR kp = new KuhnPokerCFR(false, true);
+            kp.train(trainingIterations);
+            return new PlayKuhnPoker(kp.getInfoSetMap(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public float playHands(Object game, int hands) {
+        PlayKuhnPoker pkp = (PlayKuhnPoker) game;
+
+        try {
+            pkp.play(hands);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return pkp.totalPayoffP1;
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for solving 10000 rock-paper-scissors variants with perturbed payoffs for 1000 iterations each, with
+ * BatchMatrixGameCFR or with one MatrixGameCFR per game. The score is the number of games solved per second.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchMatrixGameBenchmark {
+    static final int GAMES = 10000;
+
+    @Param({"true", "false"})
+    boolean batch;
+
+    Solvers solvers;
+    float[][][] payoffs;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+        payoffs = solvers.perturbedRockPaperScissors(GAMES, 0.3f, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public Object solve() {
+        return solvers.solveMatrixGames(payoffs, batch, 1000);
+    }
+}
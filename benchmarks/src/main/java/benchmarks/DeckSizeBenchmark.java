@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the time per iteration and the time of a best response grow with the size of the deck of Kuhn poker.
+ * Full-width CFR visits every one of the numCards * (numCards - 1) deals, while CFR over the public tree and the best
+ * response handle all cards of a betting sequence at once with prefix sums, so they grow linearly with the deck.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Thread)
+public class DeckSizeBenchmark {
+    @Param({"3", "13", "52", "1000"})
+    int numCards;
+
+    @Param({"CFR", "PUBLIC_TREE", "EXTERNAL_SAMPLING"})
+    String algorithm;
+
+    Solvers solvers;
+    Object trainer;
+    int iteration;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+        trainer = solvers.trainKuhn(algorithm, numCards, 10);
+        iteration = 10;
+    }
+
+    @Benchmark
+    public int iteration() {
+        return solvers.iterateKuhn(trainer, iteration++);
+    }
+
+    @Benchmark
+    public float bestResponse() {
+        return solvers.exploitability(trainer);
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how training Kuhn poker with a sampling algorithm scales with the number of threads sharing one table (see
+ * KuhnPokerCFR.trainHogwild(...)): every operation trains ITERATIONS iterations split among the threads, so the time
+ * per operation should fall with the number of threads up to the number of cores. At the end of each trial, the result
+ * of the last operation is checked against a single-threaded run with the same number of iterations: the exploitability
+ * and player 2's strategy, which is unique in Kuhn poker, must be within tolerance, or the trial fails.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HogwildBenchmark {
+    static final int ITERATIONS = 200_000;
+    static final float EXPLOITABILITY_TOLERANCE = 0.01f;
+    static final float STRATEGY_TOLERANCE = 0.05f;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    int threads;
+
+    @Param({"EXTERNAL_SAMPLING", "OUTCOME_SAMPLING"})
+    String algorithm;
+
+    Solvers solvers;
+    ForkJoinPool pool;
+    Object reference;
+    Object trained;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+        pool = new ForkJoinPool(threads);
+        reference = solvers.trainKuhn(algorithm, 3, ITERATIONS);
+    }
+
+    @Benchmark
+    public Object train() {
+        trained = solvers.trainKuhnHogwild(algorithm, ITERATIONS, threads, pool);
+        return trained;
+    }
+
+    @TearDown(Level.Trial)
+    public void check() {
+        pool.shutdown();
+
+        float exploitability = solvers.exploitability(trained);
+        float referenceExploitability = solvers.exploitability(reference);
+        float difference = solvers.maxStrategyDifference(trained, reference, 1);
+
+        System.out.printf("%n%s, %d threads: exploitability %.5f (single-threaded %.5f), largest difference of "
+                + "player 2's strategy %.4f%n", algorithm, threads, exploitability, referenceExploitability, difference);
+
+        if (Math.abs(exploitability - referenceExploitability) > EXPLOITABILITY_TOLERANCE
+                || difference > STRATEGY_TOLERANCE) {
+            throw new IllegalStateException("The result with " + threads + " threads isn't within tolerance of the "
+                    + "single-threaded result.");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for training Kuhn poker with KuhnPokerCFR, for both the String-keyed and the indexed information set
+ * store. Run with "java -jar benchmarks.jar -prof gc" to also get the allocation rate.
+ * @author Max Jappert
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KuhnPokerBenchmark {
+    @Param({"true", "false"})
+    boolean indexedStore;
+
+    Solvers solvers;
+
+    // Trained once, then used for measuring single iterations in a steady state.
+    Object trained;
+    int iteration;
+
+    Object store;
+
+    /**
+     * Counts the nodes visited by cfrIteration(...), so that JMH reports the time per visited node.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+
+        trained = solvers.trainKuhn(false, indexedStore, 1000);
+        iteration = 1000;
+
+        store = solvers.newStore(indexedStore);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object trainCFR() {
+        return solvers.trainKuhn(false, indexedStore, 1000);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object trainMCCFR() {
+        return solvers.trainKuhn(true, indexedStore, 1000);
+    }
+
+    /**
+     * One full-width iteration on an already trained store. The "nodes" counter gives the time per visited node.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void cfrIteration(Nodes counter) {
+        counter.nodes += solvers.iterateKuhn(trained, iteration++);
+    }
+
+    /**
+     * Looks up each of the 12 information sets of Kuhn poker once.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(12)
+    public void getIndex(Blackhole bh) {
+        for (int card = 0; card < 3; card++) {
+            bh.consume(solvers.getIndex(store, card, 0, 0));
+            bh.consume(solvers.getIndex(store, card, 1, 0));
+            bh.consume(solvers.getIndex(store, card, 1, 1));
+            bh.consume(solvers.getIndex(store, card, 2, 0b10));
+        }
+    }
+}
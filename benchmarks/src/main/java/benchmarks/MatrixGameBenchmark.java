@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for solving Colonel Blotto with MatrixGameCFR to an exploitability of 1e-4. With 10 soldiers and 5
+ * battlefields each player has 1001 pure strategies. Every invocation solves the game from scratch, so the time of a
+ * single solve is measured.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatrixGameBenchmark {
+    @Param({"6", "10"})
+    int soldiers;
+
+    Solvers solvers;
+    float[][] payoffs;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+        payoffs = solvers.colonelBlotto(soldiers, 5);
+    }
+
+    @Benchmark
+    public int solveFullWidth() {
+        return solvers.solveMatrixGame(payoffs, false, 1e-4f);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the number formats of the indexed information set store (see Precision): the throughput of training Kuhn
+ * poker with full-width CFR is measured by JMH, while the memory per information set and the exploitability reached
+ * after the last measured training are printed at the end of each trial.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrecisionBenchmark {
+    @Param({"DOUBLE", "FLOAT", "QUANTISED"})
+    String precision;
+
+    @Param({"vanilla", "cfr+", "dcfr"})
+    String rule;
+
+    Solvers solvers;
+    Object trained;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+    }
+
+    @Benchmark
+    public Object train() {
+        trained = solvers.trainKuhn(precision, rule, 1000);
+        return trained;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s, %s: %.1f bytes per information set, exploitability %.6f after 1000 iterations%n",
+                precision, rule, solvers.bytesPerInfoSet(trained), solvers.exploitability(trained));
+    }
+}
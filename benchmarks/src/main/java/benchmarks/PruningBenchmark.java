@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long training Kuhn poker with full-width CFR takes with and without pruning (see
+ * KuhnPokerCFR.setPruning(...)). Pruning must not change the result: at the end of each trial, the average strategies
+ * of the last operation are compared with those of an unpruned run with the same number of iterations at every
+ * information set of both players, and the trial fails unless they are identical.
+ * @author Max Jappert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PruningBenchmark {
+    static final int ITERATIONS = 1000;
+
+    @Param({"3", "13", "52"})
+    int numCards;
+
+    @Param({"false", "true"})
+    boolean pruning;
+
+    Solvers solvers;
+    Object reference;
+    Object trained;
+
+    @Setup
+    public void setup() {
+        solvers = Solvers.load();
+        reference = solvers.trainKuhnPruned(numCards, ITERATIONS, false);
+    }
+
+    @Benchmark
+    public Object train() {
+        trained = solvers.trainKuhnPruned(numCards, ITERATIONS, pruning);
+        return trained;
+    }
+
+    @TearDown(Level.Trial)
+    public void check() {
+        float difference = solvers.maxStrategyDifference(trained, reference, -1);
+
+        System.out.printf("%n%d cards, pruning %b: largest difference to the unpruned strategies %g%n", numCards,
+                pruning, difference);
+
+        if (difference != 0) {
+            throw new IllegalStateException("Pruning has changed the strategies with " + numCards + " cards.");
+        }
+    }
+}
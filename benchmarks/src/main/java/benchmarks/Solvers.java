@@ -0,0 +1,165 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The operations measured by the benchmarks. The solvers live in the default package, which can't be imported from a
+ * named package, while JMH requires benchmark classes to be in a named package. The implementation (SolverBridge) is
+ * therefore placed in the default package and loaded once per trial, so the measured code only goes through a plain
+ * interface call.
+ * @author Max Jappert
+ */
+public interface Solvers {
+
+    /**
+     * @return The implementation of this interface.
+     */
+    static Solvers load() {
+        try {
+            return (Solvers) Class.forName("SolverBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("SolverBridge is missing from the benchmarks jar.", e);
+        }
+    }
+
+    /**
+     * Trains Kuhn poker from scratch.
+     * @return The trained KuhnPokerCFR.
+     */
+    Object trainKuhn(boolean mccfr, boolean indexedStore, int iterations);
+
+    /**
+     * Trains Kuhn poker from scratch with the given update rule ("vanilla", "cfr+" or "dcfr"), keeping the sums in the
+     * given Precision.
+     * @return The trained KuhnPokerCFR.
+     */
+    Object trainKuhn(String precision, String rule, int iterations);
+
+    /**
+     * Trains Kuhn poker with a deck of the given size from scratch, with the given KuhnPokerCFR.Algorithm. The sampling
+     * algorithms use UpdateRule.VANILLA, the full-width ones CFR+.
+     * @return The trained KuhnPokerCFR.
+     */
+    Object trainKuhn(String algorithm, int numCards, int iterations);
+
+    /**
+     * Trains Kuhn poker with a deck of the given size from scratch with full-width CFR and UpdateRule.VANILLA, with or
+     * without pruning, see KuhnPokerCFR.setPruning(...).
+     * @return The trained KuhnPokerCFR.
+     */
+    Object trainKuhnPruned(int numCards, int iterations, boolean pruning);
+
+    /**
+     * Trains Kuhn poker from scratch with the given sampling algorithm, with the iterations split among workers which
+     * share one table, see KuhnPokerCFR.trainHogwild(...).
+     * @return The trained KuhnPokerCFR.
+     */
+    Object trainKuhnHogwild(String algorithm, int iterations, int workers, ExecutorService executor);
+
+    /**
+     * @return The largest difference between the average strategies of two trainers returned by trainKuhn(...) at
+     *         the information sets of the given player, see KuhnPokerCFR.maxStrategyDifference(...).
+     */
+    float maxStrategyDifference(Object trainer, Object other, int player);
+
+    /**
+     * @return The number of bytes per information set of the store of a trainer returned by trainKuhn(...).
+     */
+    double bytesPerInfoSet(Object trainer);
+
+    /**
+     * @return The exploitability of the average strategy of a trainer returned by trainKuhn(...).
+     */
+    float exploitability(Object trainer);
+
+    /**
+     * Runs one more iteration of its algorithm on a trainer returned by trainKuhn(...).
+     * @param trainer The trainer.
+     * @param iteration The index of the iteration.
+     * @return The number of nodes visited during the iteration.
+     */
+    int iterateKuhn(Object trainer, int iteration);
+
+    /**
+     * @return A new, empty ArrayInfoSetStore or MapInfoSetStore.
+     */
+    Object newStore(boolean indexedStore);
+
+    /**
+     * Calls InfoSetStore.getIndex(...) on a store returned by newStore(...).
+     */
+    int getIndex(Object store, int card, int depth, int bits);
+
+    /**
+     * Trains rock-paper-scissors from scratch.
+     * @return The trained RockPaperScissorsCFR.
+     */
+    Object trainRockPaperScissors(int iterations);
+
+    /**
+     * @return The payoff matrix of Colonel Blotto, see MatrixGameCFR.colonelBlotto(...).
+     */
+    float[][] colonelBlotto(int soldiers, int fields);
+
+    /**
+     * Solves the matrix game with MatrixGameCFR, checking the exploitability every 100 iterations.
+     * @return The number of iterations needed to reach the target exploitability.
+     */
+    int solveMatrixGame(float[][] payoffs, boolean sampled, float targetExploitability);
+
+    /**
+     * @return The payoff matrices of rock-paper-scissors variants, see BatchMatrixGameCFR.perturbedRockPaperScissors(...).
+     */
+    float[][][] perturbedRockPaperScissors(int numGames, float noise, long seed);
+
+    /**
+     * Solves every game for the given number of iterations, either all at once with BatchMatrixGameCFR or one after the
+     * other with a MatrixGameCFR per game.
+     * @return The average strategies of player 1.
+     */
+    Object solveMatrixGames(float[][][] payoffs, boolean batch, int iterations);
+
+    /**
+     * @return The average strategy of a trainer returned by trainKuhn(...), frozen into a FrozenPolicy.
+     */
+    Object freezePolicy(Object trainer);
+
+    /**
+     * @return The key indices of the information sets at which a player acts, for a policy returned by
+     *         freezePolicy(...).
+     */
+    int[] decisionIds(Object policy);
+
+    /**
+     * @return The key of the information set with the given key index, e.g. "K rrc".
+     */
+    String infoSetKey(Object policy, int id);
+
+    /**
+     * Samples an action of a policy returned by freezePolicy(...), see FrozenPolicy.sample(...).
+     */
+    int sampleFrozen(Object policy, int id, SplittableRandom random);
+
+    /**
+     * @return The information set map of a trainer returned by trainKuhn(...), see KuhnPokerCFR.getInfoSetMap().
+     */
+    Object infoSetMap(Object trainer);
+
+    /**
+     * Samples an action from an information set map returned by infoSetMap(...) as PlayKuhnPoker did before it used
+     * FrozenPolicy: by looking up the key, computing the average strategy and drawing from a new Random.
+     */
+    int sampleFromMap(Object iMap, String key);
+
+    /**
+     * @return A PlayKuhnPoker between the AI trained for the given number of iterations and the untrained AI.
+     */
+    Object newGame(int trainingIterations);
+
+    /**
+     * Plays the given number of hands of a game returned by newGame(...).
+     * @return Player 1's total payoff so far.
+     */
+    float playHands(Object game, int hands);
+}
@@ -0,0 +1,5 @@
+echo Building the benchmarks...
+cd benchmarks || exit
+mvn -q package && echo Benchmarks successfully built!
+cp target/benchmarks.jar ..
+echo Run them with: java -jar benchmarks.jar -prof gc
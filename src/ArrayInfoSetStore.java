@@ -0,0 +1,114 @@
+/**
+ * Information set store which maps every (card, history) pair to a dense integer index and keeps the regret sums,
+ * strategy sums, strategies and reach probabilities of all information sets in flat float arrays. Compared to
+ * MapInfoSetStore no String has to be built and hashed when visiting a node, and the values of all information sets
+ * lie next to each other in memory. See IndexedInfoSetStore for the layout of the arrays.
+ * @author Max Jappert
+ */
+public class ArrayInfoSetStore extends IndexedInfoSetStore {
+    float[] regretSum;
+    float[] strategySum;
+    float[] reachProbSum;
+    float[] strategy;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    public ArrayInfoSetStore(int numCards, int numHistories) {
+        super(numCards, numHistories);
+
+        regretSum = new float[capacity * numActions];
+        strategySum = new float[capacity * numActions];
+        reachProbSum = new float[capacity];
+        strategy = new float[capacity * numActions];
+
+        for (int i = 0; i < capacity * numActions; i++) {
+            strategy[i] = 1.0f / numActions;
+        }
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return strategy[index * numActions + action];
+    }
+
+    @Override
+    void setStrategy(int index, int action, float probability) {
+        strategy[index * numActions + action] = probability;
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return regretSum[index * numActions + action];
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        regretSum[index * numActions + action] = value;
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return strategySum[index * numActions + action];
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        strategySum[index * numActions + action] = value;
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return reachProbSum[index];
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        reachProbSum[index] = value;
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        regretSum[index * numActions + action] += regret;
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        int offset = index * numActions;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            strategySum[i] += weight * strategy[i];
+        }
+
+        reachProbSum[index] += weight;
+    }
+
+    @Override
+    void nextStrategy(int index, double strategySumFactor, double positiveFactor, double negativeFactor) {
+        int offset = index * numActions;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            strategySum[i] = strategySum[i] * (float) strategySumFactor + reachProb[index] * strategy[i];
+            regretSum[i] *= regretSum[i] > 0 ? (float) positiveFactor : (float) negativeFactor;
+        }
+
+        calcStrategy(index);
+
+        reachProbSum[index] = reachProbSum[index] * (float) strategySumFactor + reachProb[index];
+        reachProb[index] = 0;
+    }
+
+    @Override
+    public void resetStrategySums() {
+        for (int i = 0; i < capacity * numActions; i++) {
+            strategySum[i] = 0;
+        }
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return super.memoryFootprint()
+                + (long) Float.BYTES * (regretSum.length + strategySum.length + reachProbSum.length + strategy.length);
+    }
+}
@@ -0,0 +1,283 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Information set store whose regret sums and strategy sums are shared by several threads which train at the same
+ * time without any locks, as in Hogwild! (Recht et al., 2011). The threads sample independent iterations, so most of
+ * their updates hit different information sets, and the few collisions are resolved by adding to the sums with atomic
+ * compare-and-set loops (see VarHandle.getAndAdd(...)) instead of locking the table. No update is lost, but a thread
+ * may compute its strategy from regrets to which another thread is just adding, which only adds a little noise to the
+ * sampled updates.
+ * <p>
+ * Every thread works on its own view of the store (see view()), which shares the sums but keeps the current strategy
+ * in its own array, so that the strategy a thread has computed at an information set can't be changed by another
+ * thread while it is traversing the subtree below. Only the sampling algorithms are supported, since they update the
+ * sums while traversing instead of once per iteration for all information sets.
+ * @author Max Jappert
+ */
+public class AtomicInfoSetStore implements InfoSetStore {
+    static final VarHandle FLOATS = MethodHandles.arrayElementVarHandle(float[].class);
+    static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    final int numActions;
+    final int numCards;
+    final int numHistories;
+    final int capacity;
+
+    // Shared by all views.
+    final float[] regretSum;
+    final float[] strategySum;
+    final float[] reachProbSum;
+    // 1 if the information set has been visited, set once with compare-and-set so that size is counted exactly.
+    final int[] visited;
+    final AtomicInteger size;
+
+    // The current strategy as computed by the thread owning this view.
+    final float[] strategy;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    public AtomicInfoSetStore(int numCards, int numHistories) {
+        this.numActions = KuhnPokerCFR.numActions;
+        this.numCards = numCards;
+        this.numHistories = numHistories;
+        this.capacity = numCards * numHistories;
+
+        regretSum = new float[capacity * numActions];
+        strategySum = new float[capacity * numActions];
+        reachProbSum = new float[capacity];
+        visited = new int[capacity];
+        size = new AtomicInteger();
+        strategy = newStrategy(capacity * numActions);
+    }
+
+    private AtomicInfoSetStore(AtomicInfoSetStore shared) {
+        this.numActions = shared.numActions;
+        this.numCards = shared.numCards;
+        this.numHistories = shared.numHistories;
+        this.capacity = shared.capacity;
+
+        regretSum = shared.regretSum;
+        strategySum = shared.strategySum;
+        reachProbSum = shared.reachProbSum;
+        visited = shared.visited;
+        size = shared.size;
+        strategy = newStrategy(capacity * numActions);
+    }
+
+    private float[] newStrategy(int length) {
+        float[] uniform = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            uniform[i] = 1.0f / numActions;
+        }
+
+        return uniform;
+    }
+
+    /**
+     * @return A view of this store for another thread: It shares the regret sums, strategy sums and visited
+     *         information sets with this store, but computes its own current strategies.
+     */
+    public AtomicInfoSetStore view() {
+        return new AtomicInfoSetStore(this);
+    }
+
+    @Override
+    public int getIndex(int card, int depth, int bits) {
+        int index = card * numHistories + KuhnPokerCFR.historySlot(depth, bits);
+
+        if ((int) INTS.getAcquire(visited, index) == 0 && INTS.compareAndSet(visited, index, 0, 1)) {
+            size.incrementAndGet();
+        }
+
+        return index;
+    }
+
+    @Override
+    public int findIndex(int card, int depth, int bits) {
+        int index = card * numHistories + KuhnPokerCFR.historySlot(depth, bits);
+
+        return (int) INTS.getAcquire(visited, index) == 0 ? -1 : index;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return strategy[index * numActions + action];
+    }
+
+    /**
+     * Reads the sum without synchronisation, so it may be missing the additions other threads are just making.
+     */
+    @Override
+    public float getRegretSum(int index, int action) {
+        return (float) FLOATS.getOpaque(regretSum, index * numActions + action);
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        FLOATS.setVolatile(regretSum, index * numActions + action, value);
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return (float) FLOATS.getOpaque(strategySum, index * numActions + action);
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        FLOATS.setVolatile(strategySum, index * numActions + action, value);
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return (float) FLOATS.getOpaque(reachProbSum, index);
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        FLOATS.setVolatile(reachProbSum, index, value);
+    }
+
+    /**
+     * Same as InformationSet.getAverageStrategy(), but for a single action.
+     */
+    @Override
+    public float getAverageStrategy(int index, int action) {
+        float reachProbSum = getReachProbSum(index);
+
+        if (reachProbSum == 0) {
+            return 1.0f / numActions;
+        }
+
+        float totalStrategySum = 0;
+
+        for (int a = 0; a < numActions; a++) {
+            totalStrategySum += getStrategySum(index, a) / reachProbSum;
+        }
+
+        return getStrategySum(index, action) / reachProbSum / totalStrategySum;
+    }
+
+    @Override
+    public void addReachProb(int index, float reachProb) {
+        throw new UnsupportedOperationException("The shared store is only trained with the sampling algorithms.");
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        FLOATS.getAndAdd(regretSum, index * numActions + action, regret);
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        int offset = index * numActions;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            FLOATS.getAndAdd(strategySum, i, weight * strategy[i]);
+        }
+
+        FLOATS.getAndAdd(reachProbSum, index, weight);
+    }
+
+    /**
+     * Same as InformationSet.calcStrategy(), computed from the shared regret sums into the strategy of this view.
+     */
+    @Override
+    public void calcStrategy(int index) {
+        int offset = index * numActions;
+        float normalizingValue = 0;
+
+        // Every regret is read once, so that the strategy sums to 1 even if another thread changes the regrets.
+        for (int a = 0; a < numActions; a++) {
+            strategy[offset + a] = Math.max(getRegretSum(index, a), 0);
+            normalizingValue += strategy[offset + a];
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            strategy[offset + a] = normalizingValue != 0 ? strategy[offset + a] / normalizingValue : 1.0f / numActions;
+        }
+    }
+
+    /**
+     * Same as InformationSet.getProbability(...).
+     */
+    @Override
+    public float getProbability(int index, int action, float padding, float epsilon) {
+        float reachProbSum = getReachProbSum(index);
+        float p0 = getStrategySum(index, 0);
+        float p1 = getStrategySum(index, 1);
+
+        if (reachProbSum != 0) {
+            p0 = p0 / reachProbSum + 0.2f;
+            p1 = p1 / reachProbSum + 0.2f;
+        }
+
+        float normalizingSum = p0 + p1;
+        float probability;
+
+        if (normalizingSum > 0) {
+            probability = ((action == 0 ? p0 : p1) + padding) / (normalizingSum + padding);
+        } else {
+            probability = (1 + padding) / (2 + padding);
+        }
+
+        return Math.max(probability, epsilon);
+    }
+
+    @Override
+    public int player(int index) {
+        return KuhnPokerCFR.slotDepth(index % numHistories) % 2;
+    }
+
+    @Override
+    public void nextStrategies(UpdateRule rule, int iteration, int player) {
+        throw new UnsupportedOperationException("The shared store is only trained with the sampling algorithms.");
+    }
+
+    /**
+     * Must not be called while other threads are training.
+     */
+    @Override
+    public void resetStrategySums() {
+        for (int i = 0; i < capacity * numActions; i++) {
+            FLOATS.setVolatile(strategySum, i, 0.0f);
+        }
+    }
+
+    @Override
+    public Map<String, InformationSet> toMap() {
+        Map<String, InformationSet> iMap = new HashMap<>();
+
+        for (int index = 0; index < capacity; index++) {
+            if ((int) INTS.getAcquire(visited, index) == 0) {
+                continue;
+            }
+
+            InformationSet is = new InformationSet(KuhnPokerCFR.cardString(index / numHistories, numCards) + " "
+                    + KuhnPokerCFR.historyString(index % numHistories));
+
+            for (int a = 0; a < numActions; a++) {
+                is.regretSum[a] = getRegretSum(index, a);
+                is.strategySum[a] = getStrategySum(index, a);
+                is.strategy[a] = getStrategy(index, a);
+            }
+
+            is.reachProbSum = getReachProbSum(index);
+
+            iMap.put(is.key, is);
+        }
+
+        return iMap;
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many independent matrix games of the same size at once, e.g. thousands of variants of rock-paper-scissors
+ * with perturbed payoffs. Every game is solved like in MatrixGameCFR with full-width iterations, but instead of one
+ * object with its own small arrays per game, the values of all games are packed into shared arrays as a structure of
+ * arrays: the value of entry k of game g is stored at position k * numGames + g. The innermost loops therefore run
+ * over the games, i.e. over contiguous memory with the same operations for every element, which the JIT compiles to
+ * SIMD instructions no matter how small the games are.
+ * <p>
+ * The games are independent, so they are split into blocks of BLOCK_SIZE games, which are trained on several threads
+ * without any synchronisation between iterations. Each block is small enough for its values to stay in the cache for
+ * all iterations.
+ * @author Max Jappert
+ */
+public class BatchMatrixGameCFR {
+    static final int BLOCK_SIZE = 1024;
+
+    final int numGames;
+    final int rows;
+    final int cols;
+    final UpdateRule rule;
+
+    // Player 1's payoff for row i and column j of game g is payoffs[(i * cols + j) * numGames + g].
+    final float[] payoffs;
+
+    // Index 0 holds the values of player 1 (over the rows), index 1 those of player 2 (over the columns). The value of
+    // action a of game g is stored at position a * numGames + g.
+    float[][] regretSum = new float[2][];
+    float[][] strategySum = new float[2][];
+    float[][] strategy = new float[2][];
+    float[][] actionUtils = new float[2][];
+
+    int nIterations = 0;
+
+    /**
+     * Same as BatchMatrixGameCFR(payoffs, UpdateRule.cfrPlus()).
+     */
+    public BatchMatrixGameCFR(float[][][] payoffs) {
+        this(payoffs, UpdateRule.cfrPlus());
+    }
+
+    /**
+     * @param payoffs Player 1's payoffs of every game, payoffs[game][row][column]. All games must have the same size.
+     * @param rule The rule for updating the regrets and strategy sums after each iteration.
+     */
+    public BatchMatrixGameCFR(float[][][] payoffs, UpdateRule rule) {
+        this.numGames = payoffs.length;
+        this.rows = payoffs[0].length;
+        this.cols = payoffs[0][0].length;
+        this.rule = rule;
+        this.payoffs = new float[rows * cols * numGames];
+
+        for (int g = 0; g < numGames; g++) {
+            if (payoffs[g].length != rows) {
+                throw new IllegalArgumentException("Game " + g + " has " + payoffs[g].length + " rows instead of "
+                        + rows + ".");
+            }
+
+            for (int i = 0; i < rows; i++) {
+                if (payoffs[g][i].length != cols) {
+                    throw new IllegalArgumentException("Row " + i + " of game " + g + " has " + payoffs[g][i].length
+                            + " entries instead of " + cols + ".");
+                }
+
+                for (int j = 0; j < cols; j++) {
+                    this.payoffs[(i * cols + j) * numGames + g] = payoffs[g][i][j];
+                }
+            }
+        }
+
+        int[] numActions = {rows, cols};
+
+        for (int player = 0; player < 2; player++) {
+            regretSum[player] = new float[numActions[player] * numGames];
+            strategySum[player] = new float[numActions[player] * numGames];
+            strategy[player] = new float[numActions[player] * numGames];
+            actionUtils[player] = new float[numActions[player] * numGames];
+
+            Arrays.fill(strategy[player], 1.0f / numActions[player]);
+        }
+    }
+
+    /**
+     * Rock-paper-scissors with every payoff perturbed by uniform noise, keeping the games zero-sum.
+     * @param numGames The number of games.
+     * @param noise The largest perturbation of a payoff.
+     * @param seed The seed of the perturbations.
+     * @return The payoff matrices of the games.
+     */
+    public static float[][][] perturbedRockPaperScissors(int numGames, float noise, long seed) {
+        float[][] rps = {{0, -1, 1}, {1, 0, -1}, {-1, 1, 0}};
+        Random random = new Random(seed);
+        float[][][] payoffs = new float[numGames][3][3];
+
+        for (int g = 0; g < numGames; g++) {
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    payoffs[g][i][j] = rps[i][j] + (2 * random.nextFloat() - 1) * noise;
+                }
+            }
+        }
+
+        return payoffs;
+    }
+
+    /**
+     * Same as train(iterations, executor), using the common ForkJoinPool.
+     */
+    public void train(int iterations) {
+        train(iterations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the given number of iterations for every game, continuing from the previous call. The blocks of games are
+     * trained in parallel on the given executor, each for all iterations at once. The result doesn't depend on the
+     * executor, since the games are independent.
+     * @param iterations The number of iterations.
+     * @param executor The executor on which the blocks are trained.
+     */
+    public void train(int iterations, ExecutorService executor) {
+        int first = nIterations + 1;
+        List<Callable<Void>> blocks = new ArrayList<>();
+
+        for (int lo = 0; lo < numGames; lo += BLOCK_SIZE) {
+            int from = lo;
+            int to = Math.min(lo + BLOCK_SIZE, numGames);
+
+            blocks.add(() -> {
+                trainBlock(from, to, first, iterations);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(blocks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A block failed during training.", e.getCause());
+        }
+
+        nIterations += iterations;
+    }
+
+    /**
+     * Trains the games in [from, to) on the calling thread.
+     * @param first The number of the first iteration, starting at 1.
+     */
+    private void trainBlock(int from, int to, int first, int iterations) {
+        // The expected payoff of every game under the current strategies, one entry per game of the block.
+        float[] util = new float[to - from];
+        float[] uniform = new float[to - from];
+
+        for (int t = first; t < first + iterations; t++) {
+            if (rule.alternating) {
+                // Player 2's regrets are computed with the strategy player 1 has just been updated to.
+                for (int player = 0; player < 2; player++) {
+                    computeActionUtils(player, from, to);
+                    update(player, from, to, t, util, uniform);
+                }
+            } else {
+                computeActionUtils(0, from, to);
+                computeActionUtils(1, from, to);
+                update(0, from, to, t, util, uniform);
+                update(1, from, to, t, util, uniform);
+            }
+        }
+    }
+
+    /**
+     * Computes the expected payoff of each of the player's actions against the opponent's current strategy, for the
+     * games in [from, to).
+     * @param player The player (0 for player 1, 1 for player 2).
+     */
+    private void computeActionUtils(int player, int from, int to) {
+        int numActions = player == 0 ? rows : cols;
+        int numOpponentActions = player == 0 ? cols : rows;
+        float[] utils = actionUtils[player];
+        float[] opponentStrategy = strategy[1 - player];
+        float sign = player == 0 ? 1 : -1;
+
+        for (int a = 0; a < numActions; a++) {
+            int u = a * numGames;
+
+            for (int g = from; g < to; g++) {
+                utils[u + g] = 0;
+            }
+
+            for (int k = 0; k < numOpponentActions; k++) {
+                int p = (player == 0 ? a * cols + k : k * cols + a) * numGames;
+                int s = k * numGames;
+
+                for (int g = from; g < to; g++) {
+                    utils[u + g] += sign * payoffs[p + g] * opponentStrategy[s + g];
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as MatrixGameCFR.update(...), for the games in [from, to). The results can differ from MatrixGameCFR in the
+     * last bits, since the strategy is computed by multiplying with the inverse of the normalising value.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @param iteration The iteration, starting at 1.
+     * @param util A buffer with one entry per game of the block.
+     * @param uniform Another buffer with one entry per game of the block.
+     */
+    private void update(int player, int from, int to, int iteration, float[] util, float[] uniform) {
+        float strategySumFactor = rule.strategySumFactor(iteration);
+        float positiveFactor = rule.positiveRegretFactor(iteration);
+        float negativeFactor = rule.negativeRegretFactor(iteration);
+
+        int numActions = player == 0 ? rows : cols;
+        float[] utils = actionUtils[player];
+        float[] regrets = regretSum[player];
+        float[] sigma = strategy[player];
+        float[] sum = strategySum[player];
+
+        for (int g = from; g < to; g++) {
+            util[g - from] = 0;
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            int o = a * numGames;
+
+            for (int g = from; g < to; g++) {
+                util[g - from] += sigma[o + g] * utils[o + g];
+            }
+        }
+
+        // Written without branches, so that the JIT can vectorise the loops: only the positive part of the regret is
+        // kept if the rule is clipped, and positive and negative regrets are discounted by their own factors.
+        float floor = rule.clipped ? 0 : Float.NEGATIVE_INFINITY;
+
+        for (int a = 0; a < numActions; a++) {
+            int o = a * numGames;
+
+            for (int g = from; g < to; g++) {
+                float r = regrets[o + g] + Math.max(utils[o + g] - util[g - from], floor);
+                regrets[o + g] = Math.max(r, 0) * positiveFactor + Math.min(r, 0) * negativeFactor;
+                sum[o + g] = sum[o + g] * strategySumFactor + sigma[o + g];
+            }
+        }
+
+        // The normalising values are collected in the util buffer, which isn't needed anymore, and turned into the
+        // factor by which the positive regrets are multiplied. Games without positive regret play uniformly.
+        for (int g = from; g < to; g++) {
+            util[g - from] = 0;
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            int o = a * numGames;
+
+            for (int g = from; g < to; g++) {
+                util[g - from] += Math.max(regrets[o + g], 0);
+            }
+        }
+
+        for (int g = from; g < to; g++) {
+            boolean positive = util[g - from] > 0;
+            uniform[g - from] = positive ? 0 : 1.0f / numActions;
+            util[g - from] = positive ? 1 / util[g - from] : 0;
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            int o = a * numGames;
+
+            for (int g = from; g < to; g++) {
+                sigma[o + g] = Math.max(regrets[o + g], 0) * util[g - from] + uniform[g - from];
+            }
+        }
+    }
+
+    /**
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @return The average strategies of the player in all games, with the probability of action a in game g at
+     *         position g * numActions + a.
+     */
+    public float[] getAverageStrategies(int player) {
+        int numActions = player == 0 ? rows : cols;
+        float[] sum = strategySum[player];
+        float[] averageStrategies = new float[numGames * numActions];
+
+        for (int g = 0; g < numGames; g++) {
+            float normalizingValue = 0;
+
+            for (int a = 0; a < numActions; a++) {
+                normalizingValue += sum[a * numGames + g];
+            }
+
+            for (int a = 0; a < numActions; a++) {
+                averageStrategies[g * numActions + a] =
+                        normalizingValue > 0 ? sum[a * numGames + g] / normalizingValue : 1.0f / numActions;
+            }
+        }
+
+        return averageStrategies;
+    }
+
+    /**
+     * @return The exploitability of the average strategies of every game, see MatrixGameCFR.exploitability().
+     */
+    public float[] exploitabilities() {
+        float[][] averageStrategies = {getAverageStrategies(0), getAverageStrategies(1)};
+        float[] exploitabilities = new float[numGames];
+
+        for (int g = 0; g < numGames; g++) {
+            float bestResponses = 0;
+
+            for (int player = 0; player < 2; player++) {
+                int numActions = player == 0 ? rows : cols;
+                int numOpponentActions = player == 0 ? cols : rows;
+                float[] opponentStrategy = averageStrategies[1 - player];
+                float best = Float.NEGATIVE_INFINITY;
+
+                for (int a = 0; a < numActions; a++) {
+                    float util = 0;
+
+                    for (int k = 0; k < numOpponentActions; k++) {
+                        int p = (player == 0 ? a * cols + k : k * cols + a) * numGames + g;
+                        util += payoffs[p] * opponentStrategy[g * numOpponentActions + k];
+                    }
+
+                    best = Math.max(best, player == 0 ? util : -util);
+                }
+
+                bestResponses += best;
+            }
+
+            exploitabilities[g] = bestResponses / 2;
+        }
+
+        return exploitabilities;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Computes best responses against the average strategies stored in an InfoSetStore, and from them the exploitability
+ * of the strategy profile, i.e. how much a player could win on average by deviating from it. The exploitability is 0
+ * exactly at a Nash equilibrium, so it measures how far training has progressed.
+ * <p>
+ * The tree is walked once per best responding player, with the opponent's cards kept as a vector of reach
+ * probabilities and the best responder's values kept as a vector over their own cards. Since the best responder knows
+ * their own card and the history, the best action at each of their information sets can be chosen card by card by
+ * comparing the values of the actions summed over the opponent's cards. The opponent's reach doesn't depend on the
+ * best responder's card, except that both can't hold the same card, so at a terminal node the values of all cards
+ * follow from prefix sums of the opponent's reach over the sorted cards in O(numCards) instead of O(numCards^2).
+ * @author Max Jappert
+ */
+public class BestResponse {
+    final int numCards;
+
+    // The opponent's reach probabilities for each of their cards and the best responder's values for each of their
+    // cards at each depth, so that no array has to be allocated while walking the tree.
+    float[][] opponentReach;
+    float[][] values;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     */
+    public BestResponse(int numCards) {
+        this.numCards = numCards;
+        opponentReach = new float[KuhnPokerCFR.maxDepth + 1][numCards];
+        values = new float[KuhnPokerCFR.maxDepth + 1][numCards];
+    }
+
+    /**
+     * @param store The store containing the average strategies.
+     * @return The exploitability of the average strategy profile, i.e. the mean of what each player wins per round by
+     *         playing a best response against the other player's average strategy.
+     */
+    public float exploitability(InfoSetStore store) {
+        return (value(store, 0) + value(store, 1)) / 2;
+    }
+
+    /**
+     * @param store The store containing the average strategies.
+     * @param player The best responding player (0 for player 1, 1 for player 2).
+     * @return The expected payoff per round of the given player when playing a best response against the opponent's
+     *         average strategy.
+     */
+    public float value(InfoSetStore store, int player) {
+        // Every deal is equally likely, so the opponent's reach starts at 1 for every card, and the deals in which
+        // both players would hold the same card are left out at the terminal nodes.
+        Arrays.fill(opponentReach[0], 1);
+
+        bestResponse(store, 0, 0, player);
+
+        float value = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            value += values[0][card];
+        }
+
+        return value / ((float) numCards * (numCards - 1));
+    }
+
+    /**
+     * Computes values[depth], the value of the current node for each card of the best responding player, summed over
+     * the opponent's other cards weighted by opponentReach[depth].
+     * @param store The store containing the average strategies.
+     * @param depth The depth of the current node within the betting sequence.
+     * @param bits The actions leading to the current node.
+     * @param player The best responding player.
+     */
+    private void bestResponse(InfoSetStore store, int depth, int bits, int player) {
+        float[] reach = opponentReach[depth];
+        float[] value = values[depth];
+
+        if (KuhnPokerCFR.isTerminal(depth, bits)) {
+            terminalValues(depth, bits, player, reach, value);
+            return;
+        }
+
+        float[] childValue = values[depth + 1];
+
+        if (depth % 2 == player) {
+            for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                System.arraycopy(reach, 0, opponentReach[depth + 1], 0, numCards);
+                bestResponse(store, depth + 1, bits | a << depth, player);
+
+                for (int card = 0; card < numCards; card++) {
+                    value[card] = a == 0 ? childValue[card] : Math.max(value[card], childValue[card]);
+                }
+            }
+
+            return;
+        }
+
+        Arrays.fill(value, 0);
+
+        for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+            float[] nextReach = opponentReach[depth + 1];
+
+            for (int opponentCard = 0; opponentCard < numCards; opponentCard++) {
+                int infoSet = reach[opponentCard] > 0 ? store.findIndex(opponentCard, depth, bits) : -1;
+
+                // An information set which has never been visited is played uniformly.
+                float probability = infoSet == -1
+                        ? 1.0f / KuhnPokerCFR.numActions
+                        : store.getAverageStrategy(infoSet, a);
+
+                nextReach[opponentCard] = reach[opponentCard] * probability;
+            }
+
+            bestResponse(store, depth + 1, bits | a << depth, player);
+
+            for (int card = 0; card < numCards; card++) {
+                value[card] += childValue[card];
+            }
+        }
+    }
+
+    /**
+     * Computes the values of a terminal node for every card of the best responding player. The payoff only depends on
+     * whether the best responder's card is higher or lower than the opponent's (for a fold it is the same either way),
+     * so the value of a card is the payoff when holding the higher card times the opponent's reach below it, plus the
+     * payoff when holding the lower card times the opponent's reach above it.
+     */
+    private void terminalValues(int depth, int bits, int player, float[] reach, float[] value) {
+        float higher = KuhnPokerCFR.utility(depth, bits, player == 0 ? 1 : 0, player == 0 ? 0 : 1, player);
+        float lower = KuhnPokerCFR.utility(depth, bits, player == 0 ? 0 : 1, player == 0 ? 1 : 0, player);
+        float total = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            total += reach[card];
+        }
+
+        float below = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            float above = total - below - reach[card];
+            value[card] = higher * below + lower * above;
+            below += reach[card];
+        }
+    }
+}
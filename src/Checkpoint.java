@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary checkpoint of the information sets of KuhnPokerCFR, from which training can be resumed or a trained
+ * strategy can be loaded without training.
+ * <p>
+ * The file starts with a header (magic number, format version, number of cards, history slots and actions, and a
+ * CRC32 of these values), followed by one or more segments. Each segment consists of the number of finished
+ * iterations, the number of records, the records and a CRC32 of the segment. A record holds the key index of an
+ * information set (card * numHistories + history slot, see KuhnPokerCFR.historySlot(...)), its regret sums, strategy
+ * sums and reach probability sum. The first segment contains every visited information set, every further segment
+ * only those which changed since the previous save, and a record overrides the records of earlier segments with the
+ * same key index. This way saving during a sampled training run only writes what the sampling has touched.
+ * @author Max Jappert
+ */
+public class Checkpoint {
+    static final int MAGIC = 0x43465243; // "CFRC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    final Path path;
+    final int numActions = KuhnPokerCFR.numActions;
+    final int numCards;
+    final int numKeys;
+    final int recordBytes = Integer.BYTES + (2 * numActions + 1) * Float.BYTES;
+
+    // The values of every key index as they are stored in the file, so that the next save only writes the changes.
+    // They are only valid if attached is true.
+    float[] saved;
+    boolean[] savedKeys;
+    boolean attached = false;
+    // The end of the last complete segment in the file, after which the next segment is written. Anything behind it,
+    // e.g. a segment which was only partially written, is cut off by the next save.
+    long validLength = 0;
+
+    /**
+     * A checkpoint of the original game with three cards.
+     * @param path The checkpoint file. It is only read or written by load(...) and save(...).
+     */
+    public Checkpoint(Path path) {
+        this(path, KuhnPokerCFR.DEFAULT_NUM_CARDS);
+    }
+
+    /**
+     * @param path The checkpoint file. It is only read or written by load(...) and save(...).
+     * @param numCards The number of cards in the deck of the trained game. A file written for another deck is rejected
+     *                 by load(...).
+     */
+    public Checkpoint(Path path, int numCards) {
+        this.path = path;
+        this.numCards = numCards;
+        this.numKeys = numCards * KuhnPokerCFR.numHistories;
+
+        saved = new float[numKeys * (2 * numActions + 1)];
+        savedKeys = new boolean[numKeys];
+    }
+
+    /**
+     * Saves the information sets of the store. The first save of this object (unless it follows a load) replaces the
+     * file with a complete checkpoint; later saves append a segment holding only the information sets which have
+     * changed since.
+     * @param store The store containing the information sets.
+     * @param iterations The number of finished iterations.
+     */
+    public void save(InfoSetStore store, int iterations) throws IOException {
+        boolean full = !attached;
+
+        if (full) {
+            savedKeys = new boolean[numKeys];
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(numKeys * recordBytes);
+        int recordCount = 0;
+
+        for (int key = 0; key < numKeys; key++) {
+            int index = findIndex(store, key);
+
+            if (index == -1 || (!full && !changed(store, index, key))) {
+                continue;
+            }
+
+            records.putInt(key);
+
+            int offset = key * (2 * numActions + 1);
+
+            for (int a = 0; a < numActions; a++) {
+                saved[offset + a] = store.getRegretSum(index, a);
+                saved[offset + numActions + a] = store.getStrategySum(index, a);
+            }
+
+            saved[offset + 2 * numActions] = store.getReachProbSum(index);
+            savedKeys[key] = true;
+
+            for (int i = offset; i < offset + 2 * numActions + 1; i++) {
+                records.putFloat(saved[i]);
+            }
+
+            recordCount++;
+        }
+
+        records.flip();
+
+        ByteBuffer segment = ByteBuffer.allocate(2 * Integer.BYTES + records.remaining() + Integer.BYTES);
+        segment.putInt(iterations);
+        segment.putInt(recordCount);
+        segment.put(records);
+        segment.putInt(checksum(segment, 0, segment.position()));
+        segment.flip();
+
+        if (full) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, header());
+                writeFully(channel, segment);
+                channel.force(false);
+                validLength = channel.position();
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.position(validLength);
+                writeFully(channel, segment);
+                channel.force(false);
+                validLength = channel.position();
+            }
+        }
+
+        attached = true;
+    }
+
+    /**
+     * Loads the checkpoint into the given store by memory-mapping the file. The current strategies are recomputed from
+     * the regret sums. A segment which was only partially written, e.g. because the program was stopped while saving,
+     * is ignored, and the next save of this object overwrites it.
+     * @param store An empty store into which the information sets are loaded.
+     * @return The number of finished iterations stored in the checkpoint.
+     * @throws IOException If the file can't be read, was written for a different game or is corrupted.
+     */
+    public int load(InfoSetStore store) throws IOException {
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a checkpoint.");
+        }
+
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(path + " has format version " + buffer.getInt(Integer.BYTES) + ", expected "
+                    + VERSION + ".");
+        }
+
+        if (!header().equals(buffer.slice(0, HEADER_BYTES))) {
+            throw new IOException(path + " was saved for a different game or its header is corrupted.");
+        }
+
+        savedKeys = new boolean[numKeys];
+        int iterations = 0;
+        int position = HEADER_BYTES;
+
+        while (position + 2 * Integer.BYTES <= buffer.limit()) {
+            int recordCount = buffer.getInt(position + Integer.BYTES);
+            long segmentLength = 2 * Integer.BYTES + (long) recordCount * recordBytes;
+
+            if (recordCount >= 0 && segmentLength > Integer.MAX_VALUE) {
+                throw new IOException(path + " is corrupted: the segment at byte " + position + " claims " + recordCount
+                        + " records.");
+            }
+
+            if (recordCount < 0 || position + segmentLength + Integer.BYTES > buffer.limit()) {
+                break;
+            }
+
+            int length = (int) segmentLength;
+
+            if (checksum(buffer, position, length) != buffer.getInt(position + length)) {
+                throw new IOException(path + " is corrupted: checksum mismatch at byte " + position + ".");
+            }
+
+            iterations = buffer.getInt(position);
+
+            for (int r = 0; r < recordCount; r++) {
+                int recordPosition = position + 2 * Integer.BYTES + r * recordBytes;
+                int key = buffer.getInt(recordPosition);
+
+                if (key < 0 || key >= numKeys) {
+                    throw new IOException(path + " is corrupted: the record at byte " + recordPosition
+                            + " has the key index " + key + ", which isn't in [0, " + numKeys + ").");
+                }
+
+                int offset = key * (2 * numActions + 1);
+
+                for (int i = 0; i < 2 * numActions + 1; i++) {
+                    saved[offset + i] = buffer.getFloat(recordPosition + Integer.BYTES + i * Float.BYTES);
+                }
+
+                savedKeys[key] = true;
+            }
+
+            position += length + Integer.BYTES;
+        }
+
+        for (int key = 0; key < numKeys; key++) {
+            if (!savedKeys[key]) {
+                continue;
+            }
+
+            int slot = key % KuhnPokerCFR.numHistories;
+            int index = store.getIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                    KuhnPokerCFR.slotBits(slot));
+            int offset = key * (2 * numActions + 1);
+
+            for (int a = 0; a < numActions; a++) {
+                store.setRegretSum(index, a, saved[offset + a]);
+                store.setStrategySum(index, a, saved[offset + numActions + a]);
+            }
+
+            store.setReachProbSum(index, saved[offset + 2 * numActions]);
+            store.calcStrategy(index);
+        }
+
+        validLength = position;
+        attached = true;
+
+        return iterations;
+    }
+
+    /**
+     * @return The index of the information set with the given key index in the store, or -1 if it hasn't been visited.
+     */
+    private static int findIndex(InfoSetStore store, int key) {
+        int slot = key % KuhnPokerCFR.numHistories;
+        return store.findIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                KuhnPokerCFR.slotBits(slot));
+    }
+
+    /**
+     * @return Has the information set changed since it was last saved?
+     */
+    private boolean changed(InfoSetStore store, int index, int key) {
+        if (!savedKeys[key]) {
+            return true;
+        }
+
+        int offset = key * (2 * numActions + 1);
+
+        for (int a = 0; a < numActions; a++) {
+            if (saved[offset + a] != store.getRegretSum(index, a)
+                    || saved[offset + numActions + a] != store.getStrategySum(index, a)) {
+                return true;
+            }
+        }
+
+        return saved[offset + 2 * numActions] != store.getReachProbSum(index);
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(numCards);
+        header.putInt(KuhnPokerCFR.numHistories);
+        header.putInt(numActions);
+        header.putInt(checksum(header, 0, header.position()));
+        header.flip();
+        return header;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return Does the checkpoint file exist?
+     */
+    public boolean exists() {
+        return Files.exists(path);
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.Map;
+
+/**
+ * Information set store used by a single worker during parallel training. It reads the current strategy from a
+ * shared ArrayInfoSetStore, which isn't modified while an iteration is running, and accumulates the regrets and reach
+ * probabilities of the worker in its own arrays. After all workers have finished an iteration, their deltas are added
+ * to the shared store by calling mergeInto() in a fixed order, so the result doesn't depend on the thread scheduling.
+ * @author Max Jappert
+ */
+public class DeltaInfoSetStore implements InfoSetStore {
+    final ArrayInfoSetStore base;
+    final int numActions;
+
+    float[] regretSum;
+    float[] reachProb;
+
+    boolean[] visited;
+    // The indices of the visited information sets in the order of their first visit, so that merging and resetting
+    // only has to touch those.
+    int[] touched;
+    int size = 0;
+
+    /**
+     * @param base The shared store from which the strategies are read and into which the deltas are merged.
+     */
+    public DeltaInfoSetStore(ArrayInfoSetStore base) {
+        this.base = base;
+        this.numActions = base.numActions;
+
+        regretSum = new float[base.capacity * numActions];
+        reachProb = new float[base.capacity];
+        visited = new boolean[base.capacity];
+        touched = new int[base.capacity];
+    }
+
+    @Override
+    public int getIndex(int card, int depth, int bits) {
+        int index = base.indexOf(card, depth, bits);
+
+        if (!visited[index]) {
+            visited[index] = true;
+            touched[size++] = index;
+        }
+
+        return index;
+    }
+
+    @Override
+    public int findIndex(int card, int depth, int bits) {
+        return base.findIndex(card, depth, bits);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return base.getStrategy(index, action);
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return base.getRegretSum(index, action);
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        throw new UnsupportedOperationException("The regret sums are kept by the shared store.");
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return base.getStrategySum(index, action);
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        throw new UnsupportedOperationException("The strategy sums are kept by the shared store.");
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return base.getReachProbSum(index);
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        throw new UnsupportedOperationException("The reach probability sums are kept by the shared store.");
+    }
+
+    @Override
+    public float getAverageStrategy(int index, int action) {
+        return base.getAverageStrategy(index, action);
+    }
+
+    @Override
+    public void addReachProb(int index, float reachProb) {
+        this.reachProb[index] += reachProb;
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        regretSum[index * numActions + action] += regret;
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        throw new UnsupportedOperationException("The strategy sums are kept by the shared store.");
+    }
+
+    /**
+     * The strategies of the shared store stay fixed until all workers have finished the iteration, so this does
+     * nothing.
+     */
+    @Override
+    public void calcStrategy(int index) {
+    }
+
+    @Override
+    public float getProbability(int index, int action, float padding, float epsilon) {
+        return base.getProbability(index, action, padding, epsilon);
+    }
+
+    /**
+     * Adds the accumulated regrets and reach probabilities to the shared store and resets this store for the next
+     * iteration.
+     */
+    public void mergeInto() {
+        for (int k = 0; k < size; k++) {
+            int index = touched[k];
+            int offset = index * numActions;
+
+            base.touch(index);
+
+            for (int i = offset; i < offset + numActions; i++) {
+                base.regretSum[i] += regretSum[i];
+                regretSum[i] = 0;
+            }
+
+            base.reachProb[index] += reachProb[index];
+            reachProb[index] = 0;
+            visited[index] = false;
+        }
+
+        size = 0;
+    }
+
+    @Override
+    public int player(int index) {
+        return base.player(index);
+    }
+
+    @Override
+    public void nextStrategies(UpdateRule rule, int iteration, int player) {
+        throw new UnsupportedOperationException("The strategies are computed by the shared store.");
+    }
+
+    @Override
+    public void resetStrategySums() {
+        throw new UnsupportedOperationException("The strategy sums are kept by the shared store.");
+    }
+
+    @Override
+    public Map<String, InformationSet> toMap() {
+        return base.toMap();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Same as ArrayInfoSetStore, but the regret sums, strategy sums and reach probability sums are kept as doubles. After
+ * millions of iterations a float sum can be so large that the contribution of a single iteration is rounded away,
+ * which a double sum only reaches after about 2^29 times as many iterations. The current strategies and the reach
+ * probabilities of the running iteration are still floats, since they are recomputed in every iteration.
+ * @author Max Jappert
+ */
+public class DoubleInfoSetStore extends IndexedInfoSetStore {
+    double[] regretSum;
+    double[] strategySum;
+    double[] reachProbSum;
+    float[] strategy;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    public DoubleInfoSetStore(int numCards, int numHistories) {
+        super(numCards, numHistories);
+
+        regretSum = new double[capacity * numActions];
+        strategySum = new double[capacity * numActions];
+        reachProbSum = new double[capacity];
+        strategy = new float[capacity * numActions];
+
+        for (int i = 0; i < capacity * numActions; i++) {
+            strategy[i] = 1.0f / numActions;
+        }
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return strategy[index * numActions + action];
+    }
+
+    @Override
+    void setStrategy(int index, int action, float probability) {
+        strategy[index * numActions + action] = probability;
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return (float) regretSum[index * numActions + action];
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        regretSum[index * numActions + action] = value;
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return (float) strategySum[index * numActions + action];
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        strategySum[index * numActions + action] = value;
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return (float) reachProbSum[index];
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        reachProbSum[index] = value;
+    }
+
+    /**
+     * Same as IndexedInfoSetStore.getAverageStrategy(...), but the quotient is computed from the double sums.
+     */
+    @Override
+    public float getAverageStrategy(int index, int action) {
+        if (reachProbSum[index] == 0) {
+            return 1.0f / numActions;
+        }
+
+        int offset = index * numActions;
+        double totalStrategySum = 0;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            totalStrategySum += strategySum[i];
+        }
+
+        return (float) (strategySum[offset + action] / totalStrategySum);
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        regretSum[index * numActions + action] += regret;
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        int offset = index * numActions;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            strategySum[i] += (double) weight * strategy[i];
+        }
+
+        reachProbSum[index] += weight;
+    }
+
+    @Override
+    void nextStrategy(int index, double strategySumFactor, double positiveFactor, double negativeFactor) {
+        int offset = index * numActions;
+
+        for (int i = offset; i < offset + numActions; i++) {
+            strategySum[i] = strategySum[i] * strategySumFactor + (double) reachProb[index] * strategy[i];
+            regretSum[i] *= regretSum[i] > 0 ? positiveFactor : negativeFactor;
+        }
+
+        calcStrategy(index);
+
+        reachProbSum[index] = reachProbSum[index] * strategySumFactor + reachProb[index];
+        reachProb[index] = 0;
+    }
+
+    @Override
+    public void resetStrategySums() {
+        for (int i = 0; i < capacity * numActions; i++) {
+            strategySum[i] = 0;
+        }
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return super.memoryFootprint()
+                + (long) Double.BYTES * (regretSum.length + strategySum.length + reachProbSum.length)
+                + (long) Float.BYTES * strategy.length;
+    }
+}
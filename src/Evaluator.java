@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Plays Kuhn poker between two strategies without any output, in order to measure how well one strategy does against
+ * the other. Unlike PlayKuhnPoker it keeps no game state in fields, so a single evaluator can simulate hands on many
+ * threads at once. Every task draws from its own random stream, split off a seeded root stream, and the counters of
+ * the tasks are merged in a fixed order, so the result only depends on the seed and the number of tasks.
+ * <p>
+ * The strategies are given as tables of action probabilities indexed by key index * numActions + action, where the
+ * key index is card * numHistories + history slot (see KuhnPokerCFR.historySlot(...)). The number of cards in the
+ * deck follows from the length of the tables.
+ * @author Max Jappert
+ */
+public class Evaluator {
+    final float[] strategyA;
+    final float[] strategyB;
+    final int numCards;
+
+    /**
+     * The outcome of an evaluation, seen from strategy A.
+     */
+    public static class Result {
+        long hands;
+        long wins;
+        double totalPayoff;
+        double totalSquaredPayoff;
+
+        /**
+         * @return The mean payoff of strategy A per hand.
+         */
+        public double meanPayoff() {
+            return totalPayoff / hands;
+        }
+
+        /**
+         * @return The standard error of the mean payoff, or NaN for fewer than two hands, whose variance can't be
+         *         estimated.
+         */
+        public double standardError() {
+            if (hands < 2) {
+                return Double.NaN;
+            }
+
+            double mean = meanPayoff();
+            double variance = (totalSquaredPayoff - hands * mean * mean) / (hands - 1);
+            return Math.sqrt(Math.max(variance, 0) / hands);
+        }
+
+        /**
+         * @return Half the width of the 95% confidence interval of the mean payoff.
+         */
+        public double confidenceInterval95() {
+            return 1.96 * standardError();
+        }
+
+        /**
+         * @return The fraction of hands won by strategy A.
+         */
+        public double winRate() {
+            return (double) wins / hands;
+        }
+
+        private void add(Result other) {
+            hands += other.hands;
+            wins += other.wins;
+            totalPayoff += other.totalPayoff;
+            totalSquaredPayoff += other.totalSquaredPayoff;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hands, mean payoff %.5f +- %.5f (95%% CI), win rate %.2f%%",
+                    hands, meanPayoff(), confidenceInterval95(), winRate() * 100);
+        }
+    }
+
+    /**
+     * @param strategyA The strategy whose payoff is measured.
+     * @param strategyB The opponent's strategy.
+     */
+    public Evaluator(float[] strategyA, float[] strategyB) {
+        if (strategyA.length != strategyB.length) {
+            throw new IllegalArgumentException("The strategies are tables for decks of different sizes.");
+        }
+
+        this.strategyA = strategyA;
+        this.strategyB = strategyB;
+        this.numCards = strategyA.length / (KuhnPokerCFR.numHistories * KuhnPokerCFR.numActions);
+    }
+
+    /**
+     * @param store The store containing the average strategies.
+     * @param numCards The number of cards in the deck.
+     * @return The table of the average strategies. Information sets which have never been visited are played uniformly.
+     */
+    public static float[] strategyTable(InfoSetStore store, int numCards) {
+        float[] table = uniformTable(numCards);
+
+        for (int card = 0; card < numCards; card++) {
+            for (int slot = 0; slot < KuhnPokerCFR.numHistories; slot++) {
+                int index = store.findIndex(card, KuhnPokerCFR.slotDepth(slot), KuhnPokerCFR.slotBits(slot));
+
+                if (index == -1) {
+                    continue;
+                }
+
+                for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                    table[(card * KuhnPokerCFR.numHistories + slot) * KuhnPokerCFR.numActions + a] =
+                            store.getAverageStrategy(index, a);
+                }
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @return The table of the strategy playing every action with the same probability, i.e. the untrained AI.
+     */
+    public static float[] uniformTable(int numCards) {
+        float[] table = new float[numCards * KuhnPokerCFR.numHistories * KuhnPokerCFR.numActions];
+        Arrays.fill(table, 1.0f / KuhnPokerCFR.numActions);
+        return table;
+    }
+
+    /**
+     * Same as evaluate(hands, tasks, executor, seed), with one task per processor on the common ForkJoinPool.
+     */
+    public Result evaluate(long hands, long seed) {
+        return evaluate(hands, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool(), seed);
+    }
+
+    /**
+     * Simulates the given number of hands. Strategy A acts first in every other hand, starting with the first.
+     * @param hands The number of hands.
+     * @param tasks The number of tasks into which the hands are split.
+     * @param executor The executor on which the tasks run.
+     * @param seed The seed of the random streams.
+     * @return The merged result of all tasks.
+     */
+    public Result evaluate(long hands, int tasks, ExecutorService executor, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Result>> work = new ArrayList<>();
+
+        for (int t = 0; t < tasks; t++) {
+            // Every task gets an even number of hands (except possibly the last), so that both seats are played equally.
+            long chunk = (hands / tasks) & ~1L;
+            long taskHands = t < tasks - 1 ? chunk : hands - chunk * (tasks - 1);
+            SplittableRandom random = root.split();
+
+            work.add(() -> simulate(taskHands, random));
+        }
+
+        Result result = new Result();
+
+        try {
+            for (Future<Result> future : executor.invokeAll(work)) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Evaluation was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A task failed during evaluation.", e.getCause());
+        }
+
+        return result;
+    }
+
+    /**
+     * Simulates the given number of hands on the calling thread.
+     */
+    private Result simulate(long hands, SplittableRandom random) {
+        Result result = new Result();
+
+        for (long h = 0; h < hands; h++) {
+            // In even hands strategy A is player 1, in odd hands player 2.
+            int seatA = (int) (h & 1);
+            int card1 = random.nextInt(numCards);
+            int card2 = random.nextInt(numCards - 1);
+
+            if (card2 >= card1) {
+                card2++;
+            }
+
+            int depth = 0;
+            int bits = 0;
+
+            while (!KuhnPokerCFR.isTerminal(depth, bits)) {
+                int player = depth % 2;
+                float[] strategy = player == seatA ? strategyA : strategyB;
+                int key = (player == 0 ? card1 : card2) * KuhnPokerCFR.numHistories + KuhnPokerCFR.historySlot(depth, bits);
+
+                int action = KuhnPokerCFR.numActions - 1;
+                float r = random.nextFloat();
+                float cumulative = 0;
+
+                for (int a = 0; a < KuhnPokerCFR.numActions - 1; a++) {
+                    cumulative += strategy[key * KuhnPokerCFR.numActions + a];
+
+                    if (r < cumulative) {
+                        action = a;
+                        break;
+                    }
+                }
+
+                bits |= action << depth;
+                depth++;
+            }
+
+            float payoff = KuhnPokerCFR.utility(depth, bits, card1, card2, seatA);
+
+            result.hands++;
+            result.totalPayoff += payoff;
+            result.totalSquaredPayoff += payoff * payoff;
+
+            if (payoff > 0) {
+                result.wins++;
+            }
+        }
+
+        return result;
+    }
+}
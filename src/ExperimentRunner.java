@@ -0,0 +1,516 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a sweep of training runs without a terminal, e.g. hundreds of tuning experiments overnight. The sweep is
+ * described by a text file in which every line assigns a comma-separated list of values to a key, and every
+ * combination of the values is run once:
+ * <pre>
+ * # Lines starting with # are ignored.
+ * game = kuhn, kuhn-13, rps, blotto-5-3
+ * algorithm = CFR, MCCFR, EXTERNAL_SAMPLING
+ * rule = vanilla, cfr+
+ * precision = FLOAT
+ * pruning = false, true
+ * iterations = 1000, 10000
+ * threads = 1, 4
+ * seed = 1, 2, 3
+ * concurrency = 2
+ * warmup = 1000
+ * </pre>
+ * The games are Kuhn poker ("kuhn", see KuhnPokerCFR), Kuhn poker with a deck of N cards ("kuhn-N"),
+ * rock-paper-scissors ("rps", see RockPaperScissorsCFR) and Colonel Blotto with the given numbers of soldiers and
+ * fields ("blotto-S-F", see MatrixGameCFR). The algorithm, the precision, pruning (see KuhnPokerCFR.setPruning(...))
+ * and the number of threads only apply to Kuhn poker, the rule to
+ * Kuhn poker and Colonel Blotto; a value which doesn't apply to a game is shown as "-" and the duplicate combinations
+ * are dropped. With more than one thread,
+ * Kuhn poker is trained with trainParallel(...), or with trainHogwild(...) for the sampling algorithms, both of which
+ * always keep the sums as floats.
+ * <p>
+ * Before measuring, every distinct kind of run is trained once for the warmup number of iterations, so that all runs
+ * are timed with compiled code. Up to concurrency runs are trained at the same time, each on its own thread (plus the
+ * threads of a parallel run). Runs which are trained at the same time compete for the processor cores, so the times
+ * are only comparable if concurrency times threads doesn't exceed the number of cores. A run which fails, e.g. because
+ * the rule isn't supported by a sampling algorithm, is reported in the error column without stopping the sweep.
+ * <p>
+ * Every finished run is written as a row of a CSV table right away, so the results of a sweep which is aborted are
+ * kept. The rows are written in the order in which the runs finish; the run column holds the position of the run in
+ * the sweep.
+ * @author Max Jappert
+ */
+public class ExperimentRunner {
+    static final String HEADER =
+            "run,game,algorithm,rule,precision,pruning,threads,iterations,seed,millis,nodes_visited,pruned_fraction,"
+                    + "exploitability,error";
+
+    /**
+     * A single training run of the sweep. Values which don't apply to the game are "-".
+     */
+    static class Config {
+        final String game;
+        final String algorithm;
+        final String rule;
+        final String precision;
+        final String pruning;
+        final int iterations;
+        final int threads;
+        final long seed;
+
+        Config(String game, String algorithm, String rule, String precision, String pruning, int iterations,
+               int threads, long seed) {
+            this.game = game;
+            this.algorithm = algorithm;
+            this.rule = rule;
+            this.precision = precision;
+            this.pruning = pruning;
+            this.iterations = iterations;
+            this.threads = threads;
+            this.seed = seed;
+        }
+
+        /**
+         * @return The same run, with the given number of iterations.
+         */
+        Config withIterations(int iterations) {
+            return new Config(game, algorithm, rule, precision, pruning, iterations, threads, seed);
+        }
+
+        /**
+         * @return The values which distinguish this kind of run from others, i.e. all of them except for the number
+         *         of iterations and the seed.
+         */
+        String kind() {
+            return String.join(",", game, algorithm, rule, precision, pruning, Integer.toString(threads));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Config && toString().equals(o.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return kind() + "," + iterations + "," + seed;
+        }
+    }
+
+    final List<Config> configs;
+    final int concurrency;
+    final int warmup;
+
+    /**
+     * @param configs The runs of the sweep.
+     * @param concurrency The number of runs which are trained at the same time.
+     * @param warmup The number of iterations for which every kind of run is trained before measuring, or 0.
+     */
+    public ExperimentRunner(List<Config> configs, int concurrency, int warmup) {
+        if (concurrency < 1 || warmup < 0) {
+            throw new IllegalArgumentException("The concurrency must be positive and the warmup can't be negative.");
+        }
+
+        this.configs = List.copyOf(configs);
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+    }
+
+    /**
+     * Reads a sweep from the given file, see the description of the class.
+     * @param path The file describing the sweep.
+     * @return The runner for the sweep.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If the file isn't a valid sweep.
+     */
+    public static ExperimentRunner parse(Path path) throws IOException {
+        Map<String, String[]> values = new LinkedHashMap<>();
+        values.put("game", new String[]{"kuhn"});
+        values.put("algorithm", new String[]{"CFR"});
+        values.put("rule", new String[]{"vanilla"});
+        values.put("precision", new String[]{"FLOAT"});
+        values.put("pruning", new String[]{"false"});
+        values.put("iterations", new String[]{"10000"});
+        values.put("threads", new String[]{"1"});
+        values.put("seed", new String[]{"1"});
+        values.put("concurrency", new String[]{"1"});
+        values.put("warmup", new String[]{"1000"});
+
+        List<String> lines = Files.readAllLines(path);
+
+        for (int l = 0; l < lines.size(); l++) {
+            String line = lines.get(l).strip();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int equals = line.indexOf('=');
+            String key = equals < 0 ? "" : line.substring(0, equals).strip().toLowerCase(Locale.ROOT);
+
+            if (!values.containsKey(key)) {
+                throw new IllegalArgumentException("Line " + (l + 1) + " of " + path + " doesn't assign one of "
+                        + values.keySet() + ".");
+            }
+
+            String[] list = line.substring(equals + 1).split(",");
+
+            for (int i = 0; i < list.length; i++) {
+                list[i] = list[i].strip();
+            }
+
+            values.put(key, list);
+        }
+
+        try {
+            return new ExperimentRunner(expand(values), Integer.parseInt(single(values, "concurrency")),
+                    Integer.parseInt(single(values, "warmup")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The sweep " + path + " contains an invalid number: " + e.getMessage(), e);
+        }
+    }
+
+    private static String single(Map<String, String[]> values, String key) {
+        if (values.get(key).length != 1) {
+            throw new IllegalArgumentException("Only one value can be given for " + key + ".");
+        }
+
+        return values.get(key)[0];
+    }
+
+    /**
+     * @return Every combination of the values, without the duplicates which only differ in values that don't apply
+     *         to the game.
+     */
+    private static List<Config> expand(Map<String, String[]> values) {
+        Set<Config> configs = new LinkedHashSet<>();
+
+        for (String game : values.get("game")) {
+            checkGame(game);
+
+            for (String algorithm : values.get("algorithm")) {
+                for (String rule : values.get("rule")) {
+                    for (String precision : values.get("precision")) {
+                        for (String pruning : values.get("pruning")) {
+                            for (String iterations : values.get("iterations")) {
+                                for (String threads : values.get("threads")) {
+                                    for (String seed : values.get("seed")) {
+                                        configs.add(config(game, algorithm, rule, precision, pruning,
+                                                Integer.parseInt(iterations), Integer.parseInt(threads),
+                                                Long.parseLong(seed)));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<>(configs);
+    }
+
+    private static Config config(String game, String algorithm, String rule, String precision, String pruning,
+                                 int iterations, int threads, long seed) {
+        if (iterations < 1 || threads < 1) {
+            throw new IllegalArgumentException("The iterations and threads must be positive.");
+        }
+
+        if (!pruning.equalsIgnoreCase("true") && !pruning.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Pruning must be true or false, not " + pruning + ".");
+        }
+
+        if (isKuhn(game)) {
+            KuhnPokerCFR.Algorithm a = KuhnPokerCFR.Algorithm.valueOf(algorithm.toUpperCase(Locale.ROOT));
+            UpdateRule.forName(rule);
+            Precision p = threads > 1 ? Precision.FLOAT : Precision.valueOf(precision.toUpperCase(Locale.ROOT));
+
+            return new Config(game, a.name(), rule.toLowerCase(Locale.ROOT), p.name(), pruning.toLowerCase(Locale.ROOT),
+                    iterations, threads, seed);
+        } else if (game.equals("rps")) {
+            return new Config(game, "-", "-", "-", "-", iterations, 1, seed);
+        } else {
+            UpdateRule.forName(rule);
+
+            return new Config(game, "-", rule.toLowerCase(Locale.ROOT), "-", "-", iterations, 1, seed);
+        }
+    }
+
+    private static void checkGame(String game) {
+        if (game.equals("rps")) {
+            return;
+        }
+
+        if (isKuhn(game)) {
+            if (numCards(game) < 2) {
+                throw new IllegalArgumentException("The deck of " + game + " must have at least 2 cards.");
+            }
+
+            return;
+        }
+
+        String[] parts = game.split("-");
+
+        if (parts.length != 3 || !parts[0].equals("blotto")) {
+            throw new IllegalArgumentException("Unknown game " + game + ".");
+        }
+
+        Integer.parseInt(parts[1]);
+        Integer.parseInt(parts[2]);
+    }
+
+    private static boolean isKuhn(String game) {
+        return game.equals("kuhn") || game.startsWith("kuhn-");
+    }
+
+    /**
+     * @param game "kuhn" or "kuhn-N".
+     * @return The number of cards in the deck of the game.
+     */
+    private static int numCards(String game) {
+        return game.equals("kuhn") ? KuhnPokerCFR.DEFAULT_NUM_CARDS : Integer.parseInt(game.substring("kuhn-".length()));
+    }
+
+    /**
+     * Warms up the JVM and trains every run of the sweep, writing a row for each run as soon as it is finished.
+     * @param out The writer to which the table is written. It isn't closed.
+     * @param progress The stream to which a line is printed for every finished run, or null.
+     * @return The number of runs which failed.
+     */
+    public int run(Writer out, PrintStream progress) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "experiment");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            if (warmup > 0) {
+                warmUp(executor);
+            }
+
+            out.write(HEADER + "\n");
+            out.flush();
+
+            AtomicInteger finished = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            List<Callable<Void>> runs = new ArrayList<>();
+
+            for (int r = 0; r < configs.size(); r++) {
+                int run = r;
+                Config config = configs.get(r);
+
+                runs.add(() -> {
+                    Result result = train(config);
+                    String row = run + "," + config + "," + result;
+
+                    if (result.error != null) {
+                        failed.incrementAndGet();
+                    }
+
+                    synchronized (out) {
+                        out.write(row + "\n");
+                        out.flush();
+                    }
+
+                    if (progress != null) {
+                        progress.println("[" + finished.incrementAndGet() + "/" + configs.size() + "] " + row);
+                    }
+
+                    return null;
+                });
+            }
+
+            invokeAll(executor, runs);
+
+            return failed.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Trains every distinct kind of run once for the warmup number of iterations. Failures are ignored here, since
+     * they are reported by the measured run.
+     */
+    private void warmUp(ExecutorService executor) {
+        Map<String, Config> kinds = new LinkedHashMap<>();
+
+        for (Config config : configs) {
+            kinds.putIfAbsent(config.kind(), config.withIterations(warmup));
+        }
+
+        List<Callable<Void>> runs = new ArrayList<>();
+
+        for (Config config : kinds.values()) {
+            runs.add(() -> {
+                train(config);
+                return null;
+            });
+        }
+
+        invokeAll(executor, runs);
+    }
+
+    /**
+     * The outcome of a run: the time in milliseconds, the number of visited nodes and the fraction of pruned nodes (-1
+     * if they aren't counted) and the exploitability, or the error if the run failed.
+     */
+    static class Result {
+        double millis;
+        long nodesVisited = -1;
+        double prunedFraction = -1;
+        float exploitability;
+        String error;
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return ",,,," + csvField(error);
+            }
+
+            return String.format(Locale.ROOT, "%.3f,%s,%s,%g,", millis,
+                    nodesVisited < 0 ? "" : Long.toString(nodesVisited),
+                    prunedFraction < 0 ? "" : String.format(Locale.ROOT, "%.4f", prunedFraction), exploitability);
+        }
+    }
+
+    /**
+     * Trains the run on the calling thread.
+     * @return The result of the run.
+     */
+    static Result train(Config config) {
+        Result result = new Result();
+
+        try {
+            long startTime = System.nanoTime();
+
+            if (isKuhn(config.game)) {
+                KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.valueOf(config.algorithm),
+                        Precision.valueOf(config.precision), UpdateRule.forName(config.rule), numCards(config.game));
+                kp.random = new Random(config.seed);
+                kp.setPruning(Boolean.parseBoolean(config.pruning));
+
+                if (config.threads > 1) {
+                    ForkJoinPool pool = new ForkJoinPool(config.threads);
+                    boolean sampled = kp.algorithm == KuhnPokerCFR.Algorithm.OUTCOME_SAMPLING
+                            || kp.algorithm == KuhnPokerCFR.Algorithm.EXTERNAL_SAMPLING;
+
+                    try {
+                        if (sampled) {
+                            kp.trainHogwild(config.iterations, config.threads, pool);
+                        } else {
+                            kp.trainParallel(config.iterations, pool);
+                        }
+                    } finally {
+                        pool.shutdown();
+                    }
+                } else {
+                    kp.train(config.iterations);
+                }
+
+                result.millis = (System.nanoTime() - startTime) / 1e6;
+                result.nodesVisited = kp.nodesVisited;
+                result.prunedFraction = kp.prunedFraction();
+                result.exploitability = kp.exploitability();
+            } else if (config.game.equals("rps")) {
+                RockPaperScissorsCFR rps = new RockPaperScissorsCFR();
+                rps.random = new Random(config.seed);
+
+                rps.train(config.iterations);
+
+                result.millis = (System.nanoTime() - startTime) / 1e6;
+                result.exploitability = rps.exploitability();
+            } else {
+                String[] parts = config.game.split("-");
+                MatrixGameCFR game = new MatrixGameCFR(MatrixGameCFR.colonelBlotto(Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2])), MatrixGameCFR.Mode.FULL_WIDTH, UpdateRule.forName(config.rule));
+                game.random = new Random(config.seed);
+
+                game.train(config.iterations);
+
+                result.millis = (System.nanoTime() - startTime) / 1e6;
+                result.exploitability = game.exploitability();
+            }
+        } catch (IOException | RuntimeException e) {
+            result.error = e.toString();
+        }
+
+        return result;
+    }
+
+    private static String csvField(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The sweep was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A run of the sweep failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the sweep described by the file given with --sweep and writes the results to the file given with --out
+     * (results.csv by default).
+     * @param args The command line arguments, e.g. --sweep sweep.txt --out results.csv
+     */
+    public static void main(String[] args) throws IOException {
+        Path sweep = null;
+        Path out = Path.of("results.csv");
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--sweep") && i + 1 < args.length) {
+                sweep = Path.of(args[++i]);
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Path.of(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i] + ". Usage: --sweep <file> [--out <file>]");
+            }
+        }
+
+        if (sweep == null) {
+            throw new IllegalArgumentException("No sweep given. Usage: --sweep <file> [--out <file>]");
+        }
+
+        ExperimentRunner runner = parse(sweep);
+
+        System.out.println("Running " + runner.configs.size() + " configurations, " + runner.concurrency
+                + " at a time. The results are written to " + out + ".");
+
+        int failed;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            failed = runner.run(writer, System.out);
+        }
+
+        System.out.println("Done, " + failed + " of " + runner.configs.size() + " runs failed.");
+    }
+}
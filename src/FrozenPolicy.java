@@ -0,0 +1,279 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * The average strategy of a trained model, compiled into flat arrays for playing. Every information set is identified
+ * by its key index (card * numHistories + history slot, see KuhnPokerCFR.historySlot(...)), and the normalised
+ * probabilities of its actions are computed once when the policy is frozen, instead of on every decision as by
+ * InformationSet.getAverageStrategy().
+ * <p>
+ * Actions are sampled with the alias method (Walker, 1977; built as by Vose, 1991): The numActions columns of an
+ * information set each have probability 1 / numActions, and column i plays action i with probability thresholds[i]
+ * and the action aliases[i] otherwise. A decision therefore takes a single uniform number, a multiplication and two
+ * array reads, whatever the number of actions, and allocates nothing.
+ * <p>
+ * All arrays are filled in the constructor and never written afterwards, and they are only reachable through final
+ * fields, so a policy can be shared between threads without any synchronisation.
+ * @author Max Jappert
+ */
+public class FrozenPolicy {
+    final int numCards;
+    final int numActions = KuhnPokerCFR.numActions;
+
+    // Indexed by key index * numActions + action.
+    final float[] probabilities;
+    final float[] thresholds;
+    final int[] aliases;
+
+    final Map<String, Integer> cards;
+
+    /**
+     * @param table The probabilities of the actions, indexed like the tables of Evaluator. They are normalised, and
+     *              information sets whose probabilities don't sum to a positive number are played uniformly.
+     */
+    public FrozenPolicy(float[] table) {
+        int keyLength = KuhnPokerCFR.numHistories * numActions;
+
+        if (table.length == 0 || table.length % keyLength != 0) {
+            throw new IllegalArgumentException("The table has " + table.length + " entries, which isn't a multiple of "
+                    + keyLength + ".");
+        }
+
+        numCards = table.length / keyLength;
+        probabilities = new float[table.length];
+        thresholds = new float[table.length];
+        aliases = new int[table.length];
+
+        for (int offset = 0; offset < table.length; offset += numActions) {
+            normalise(table, offset);
+            buildAliasTable(offset);
+        }
+
+        Map<String, Integer> cards = new HashMap<>();
+
+        for (int card = 0; card < numCards; card++) {
+            cards.put(KuhnPokerCFR.cardString(card, numCards), card);
+        }
+
+        this.cards = Map.copyOf(cards);
+    }
+
+    /**
+     * Freezes the average strategies of an information set map, e.g. KuhnPokerCFR.getInfoSetMap(). Information sets
+     * which are missing from the map or have never been reached are played uniformly.
+     * @param iMap The information sets, with keys such as "K rrc".
+     * @param numCards The number of cards in the deck.
+     * @return The policy.
+     */
+    public static FrozenPolicy freeze(Map<String, InformationSet> iMap, int numCards) {
+        float[] table = Evaluator.uniformTable(numCards);
+
+        for (int card = 0; card < numCards; card++) {
+            for (int slot = 0; slot < KuhnPokerCFR.numHistories; slot++) {
+                InformationSet is = iMap.get(KuhnPokerCFR.cardString(card, numCards) + " "
+                        + KuhnPokerCFR.historyString(slot));
+
+                if (is == null || is.reachProbSum == 0) {
+                    continue;
+                }
+
+                float[] strategy = is.getAverageStrategy();
+
+                System.arraycopy(strategy, 0, table, (card * KuhnPokerCFR.numHistories + slot) * KuhnPokerCFR.numActions,
+                        KuhnPokerCFR.numActions);
+            }
+        }
+
+        return new FrozenPolicy(table);
+    }
+
+    /**
+     * Freezes the average strategies of a store, see Evaluator.strategyTable(...).
+     */
+    public static FrozenPolicy freeze(InfoSetStore store, int numCards) {
+        return new FrozenPolicy(Evaluator.strategyTable(store, numCards));
+    }
+
+    /**
+     * @return The policy playing every action with the same probability, i.e. the untrained AI.
+     */
+    public static FrozenPolicy uniform(int numCards) {
+        return new FrozenPolicy(Evaluator.uniformTable(numCards));
+    }
+
+    private void normalise(float[] table, int offset) {
+        double sum = 0;
+
+        for (int a = 0; a < numActions; a++) {
+            sum += Math.max(table[offset + a], 0);
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            probabilities[offset + a] = sum > 0 && Double.isFinite(sum)
+                    ? (float) (Math.max(table[offset + a], 0) / sum) : 1.0f / numActions;
+        }
+    }
+
+    /**
+     * Splits the probabilities of an information set into the columns of the alias method: Columns which hold less
+     * than their share are filled up with the probability of an action which holds more.
+     */
+    private void buildAliasTable(int offset) {
+        double[] scaled = new double[numActions];
+        int[] small = new int[numActions];
+        int[] large = new int[numActions];
+        int numSmall = 0;
+        int numLarge = 0;
+
+        for (int a = 0; a < numActions; a++) {
+            scaled[a] = (double) probabilities[offset + a] * numActions;
+
+            if (scaled[a] < 1) {
+                small[numSmall++] = a;
+            } else {
+                large[numLarge++] = a;
+            }
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+
+            thresholds[offset + less] = (float) scaled[less];
+            aliases[offset + less] = more;
+
+            scaled[more] += scaled[less] - 1;
+
+            if (scaled[more] < 1) {
+                small[numSmall++] = more;
+            } else {
+                large[numLarge++] = more;
+            }
+        }
+
+        // The remaining columns are full, up to rounding errors.
+        while (numLarge > 0) {
+            int a = large[--numLarge];
+            thresholds[offset + a] = 1;
+            aliases[offset + a] = a;
+        }
+
+        while (numSmall > 0) {
+            int a = small[--numSmall];
+            thresholds[offset + a] = 1;
+            aliases[offset + a] = a;
+        }
+    }
+
+    /**
+     * @param id The key index of the information set.
+     * @param u A uniformly distributed number in [0, 1).
+     * @return The action chosen by the policy for u.
+     */
+    public int sample(int id, double u) {
+        double scaled = u * numActions;
+        int column = (int) scaled;
+        int i = id * numActions + column;
+
+        return scaled - column < thresholds[i] ? column : aliases[i];
+    }
+
+    /**
+     * Samples an action with a number drawn from the given generator, e.g. a SplittableRandom owned by the calling
+     * thread or ThreadLocalRandom.current().
+     */
+    public int sample(int id, RandomGenerator random) {
+        return sample(id, random.nextDouble());
+    }
+
+    /**
+     * @param id The key index of the information set.
+     * @param action The action.
+     * @return The probability of playing the action at the information set.
+     */
+    public float probability(int id, int action) {
+        return probabilities[id * numActions + action];
+    }
+
+    /**
+     * @return The key index of the information set of the given card and history.
+     */
+    public int id(int card, int depth, int bits) {
+        return card * KuhnPokerCFR.numHistories + KuhnPokerCFR.historySlot(depth, bits);
+    }
+
+    /**
+     * @param card The card, in [0, numCards).
+     * @param history A history at which a player acts, e.g. "rrc".
+     * @return The key index of the information set.
+     */
+    public int id(int card, String history) {
+        if (card < 0 || card >= numCards) {
+            throw new IllegalArgumentException("Illegal card number " + card + " for a deck of " + numCards + " cards.");
+        }
+
+        if (!history.startsWith("rr")) {
+            throw new IllegalArgumentException("The history " + history + " doesn't start with rr.");
+        }
+
+        int depth = history.length() - 2;
+        int bits = 0;
+
+        for (int i = 0; i < depth; i++) {
+            char action = history.charAt(i + 2);
+
+            if (action != 'c' && action != 'b') {
+                throw new IllegalArgumentException("The history " + history + " contains the unknown action "
+                        + action + ".");
+            }
+
+            bits |= (action == 'b' ? 1 : 0) << i;
+        }
+
+        if (depth >= KuhnPokerCFR.maxDepth || KuhnPokerCFR.isTerminal(depth, bits)) {
+            throw new IllegalArgumentException("Nobody acts after the history " + history + ".");
+        }
+
+        return id(card, depth, bits);
+    }
+
+    /**
+     * @param card The label of a card, see KuhnPokerCFR.cardString(...).
+     * @param history A history at which a player acts, e.g. "rrc".
+     * @return The key index of the information set.
+     */
+    public int id(String card, String history) {
+        Integer cardNumber = cards.get(card);
+
+        if (cardNumber == null) {
+            throw new IllegalArgumentException("Unknown card " + card + " for a deck of " + numCards + " cards.");
+        }
+
+        return id(cardNumber, history);
+    }
+
+    /**
+     * @return Is the key index that of an information set at which a player acts?
+     */
+    public boolean isDecision(int id) {
+        int slot = id % KuhnPokerCFR.numHistories;
+        return id >= 0 && id < numCards * KuhnPokerCFR.numHistories
+                && !KuhnPokerCFR.isTerminal(KuhnPokerCFR.slotDepth(slot), KuhnPokerCFR.slotBits(slot));
+    }
+
+    /**
+     * @return The key of the information set, e.g. "K rrc".
+     */
+    public String infoSetString(int id) {
+        return KuhnPokerCFR.cardString(id / KuhnPokerCFR.numHistories, numCards) + " "
+                + KuhnPokerCFR.historyString(id % KuhnPokerCFR.numHistories);
+    }
+
+    /**
+     * @return The number of cards in the deck.
+     */
+    public int numCards() {
+        return numCards;
+    }
+}
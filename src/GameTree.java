@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The betting tree of Kuhn poker, compiled once into flat arrays, so that the training algorithms can walk the tree by
+ * node index instead of evaluating the history at every node. Since the betting is public, the tree is the same for
+ * every deal: the cards only select the information set at a decision node and the payoff at a terminal node, which
+ * is looked up in a table indexed by terminal and deal.
+ * <p>
+ * The nodes are numbered in breadth-first order starting with the root, i.e. the empty betting sequence after "rr".
+ * The children of a decision node are therefore stored next to each other, the child reached by action a being
+ * firstChild[node] + a.
+ * @author Max Jappert
+ */
+public class GameTree {
+    static final byte DECISION = 0;
+    static final byte TERMINAL = 1;
+    static final int ROOT = 0;
+
+    final int numCards;
+    final int numActions;
+    final int numNodes;
+    final int numTerminals;
+    // The number of possible deals, i.e. the number of children of the chance node above the root.
+    final int numDeals;
+
+    final byte[] type;
+    // The player acting at a decision node, or the player who would act next at a terminal node.
+    final byte[] player;
+    // The index of the first child of a decision node, or -1 for a terminal node.
+    final int[] firstChild;
+    // The history of every node, encoded as depth and bit pattern like in KuhnPokerCFR.
+    final byte[] depth;
+    final int[] bits;
+    // The history slot of every node, see KuhnPokerCFR.historySlot(...).
+    final int[] slot;
+    // The index of a terminal node within the payoff table, or -1 for a decision node.
+    final int[] terminal;
+    // The payoff of the player stored in player[node], indexed by terminal index * numDeals + deal.
+    final float[] payoff;
+    // For every terminal index: Does the payoff depend on the cards, i.e. is there a showdown? If so, the higher card
+    // wins stake[terminal], otherwise the player stored in player[node] wins stake[terminal] with every deal.
+    final boolean[] showdown;
+    final float[] stake;
+
+    // The largest payoff a player can get in the subtree of a node, indexed by (node * 2 + player) * 2 + 1 if the
+    // player holds the higher card and by (node * 2 + player) * 2 otherwise, see maxUtility(...).
+    final float[] maxUtility;
+    // The number of nodes in the subtree of every node, including the node itself.
+    final int[] subtreeSize;
+    // The players acting at the decision nodes in the subtree of every node, including the node itself, one bit per
+    // player.
+    final byte[] subtreePlayers;
+
+    // The cards of both players for each deal, in the order in which chanceUtil(...) visited them.
+    final int[] dealCard1;
+    final int[] dealCard2;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numActions The number of actions at each decision node.
+     */
+    public GameTree(int numCards, int numActions) {
+        this.numCards = numCards;
+        this.numActions = numActions;
+
+        // Breadth-first enumeration of the histories, each given as {depth, bits}.
+        List<int[]> histories = new ArrayList<>();
+        histories.add(new int[] {0, 0});
+        int terminals = 0;
+
+        for (int n = 0; n < histories.size(); n++) {
+            int[] history = histories.get(n);
+
+            if (KuhnPokerCFR.isTerminal(history[0], history[1])) {
+                terminals++;
+                continue;
+            }
+
+            for (int a = 0; a < numActions; a++) {
+                histories.add(new int[] {history[0] + 1, history[1] | a << history[0]});
+            }
+        }
+
+        numNodes = histories.size();
+        numTerminals = terminals;
+        numDeals = numCards * (numCards - 1);
+
+        dealCard1 = new int[numDeals];
+        dealCard2 = new int[numDeals];
+
+        int deal = 0;
+
+        for (int i = 0; i < numCards; i++) {
+            for (int j = 0; j < numCards; j++) {
+                if (i != j) {
+                    dealCard1[deal] = i;
+                    dealCard2[deal] = j;
+                    deal++;
+                }
+            }
+        }
+
+        type = new byte[numNodes];
+        player = new byte[numNodes];
+        firstChild = new int[numNodes];
+        depth = new byte[numNodes];
+        bits = new int[numNodes];
+        slot = new int[numNodes];
+        terminal = new int[numNodes];
+        payoff = new float[numTerminals * numDeals];
+        showdown = new boolean[numTerminals];
+        stake = new float[numTerminals];
+
+        int nextChild = ROOT + 1;
+        int nextTerminal = 0;
+
+        for (int node = 0; node < numNodes; node++) {
+            int[] history = histories.get(node);
+
+            depth[node] = (byte) history[0];
+            bits[node] = history[1];
+            slot[node] = KuhnPokerCFR.historySlot(history[0], history[1]);
+            player[node] = (byte) (history[0] % 2);
+
+            if (KuhnPokerCFR.isTerminal(history[0], history[1])) {
+                type[node] = TERMINAL;
+                firstChild[node] = -1;
+                terminal[node] = nextTerminal;
+
+                for (int d = 0; d < numDeals; d++) {
+                    payoff[nextTerminal * numDeals + d] =
+                            KuhnPokerCFR.terminalUtil(history[0], history[1], dealCard1[d], dealCard2[d]);
+                    showdown[nextTerminal] |= payoff[nextTerminal * numDeals + d] != payoff[nextTerminal * numDeals];
+                }
+
+                stake[nextTerminal] = Math.abs(payoff[nextTerminal * numDeals]);
+
+                nextTerminal++;
+            } else {
+                type[node] = DECISION;
+                firstChild[node] = nextChild;
+                terminal[node] = -1;
+                nextChild += numActions;
+            }
+        }
+
+        maxUtility = new float[numNodes * 4];
+        subtreeSize = new int[numNodes];
+        subtreePlayers = new byte[numNodes];
+
+        // The children of a node come after it in breadth-first order, so going backwards visits them first.
+        for (int node = numNodes - 1; node >= 0; node--) {
+            for (int p = 0; p < 2; p++) {
+                for (int higher = 0; higher < 2; higher++) {
+                    float max;
+
+                    if (isTerminal(node)) {
+                        int t = terminal[node];
+
+                        if (showdown[t]) {
+                            max = higher == 1 ? stake[t] : -stake[t];
+                        } else {
+                            max = utility(node, 0, p);
+                        }
+                    } else {
+                        max = Float.NEGATIVE_INFINITY;
+
+                        for (int a = 0; a < numActions; a++) {
+                            max = Math.max(max, maxUtility[((firstChild[node] + a) * 2 + p) * 2 + higher]);
+                        }
+                    }
+
+                    maxUtility[(node * 2 + p) * 2 + higher] = max;
+                }
+            }
+
+            subtreeSize[node] = 1;
+
+            if (!isTerminal(node)) {
+                subtreePlayers[node] = (byte) (1 << player[node]);
+
+                for (int a = 0; a < numActions; a++) {
+                    subtreeSize[node] += subtreeSize[firstChild[node] + a];
+                    subtreePlayers[node] |= subtreePlayers[firstChild[node] + a];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Is the given node a terminal node?
+     */
+    public boolean isTerminal(int node) {
+        return type[node] == TERMINAL;
+    }
+
+    /**
+     * @return The node reached by playing the given action at the given decision node.
+     */
+    public int child(int node, int action) {
+        return firstChild[node] + action;
+    }
+
+    /**
+     * @return The card of the given player (0 for player 1, 1 for player 2) in the given deal.
+     */
+    public int card(int deal, int player) {
+        return player == 0 ? dealCard1[deal] : dealCard2[deal];
+    }
+
+    /**
+     * @param node A terminal node.
+     * @param deal The deal.
+     * @return The payoff of the player who would act next at the terminal node, like KuhnPokerCFR.terminalUtil(...).
+     */
+    public float payoff(int node, int deal) {
+        return payoff[terminal[node] * numDeals + deal];
+    }
+
+    /**
+     * @param node A terminal node.
+     * @param deal The deal.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @return The payoff of the terminal node for the given player.
+     */
+    public float utility(int node, int deal, int player) {
+        float payoff = payoff(node, deal);
+        return this.player[node] == player ? payoff : -payoff;
+    }
+
+    /**
+     * @param node A node.
+     * @param deal The deal.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @return An upper bound on the payoff the given player can get below the node with the given deal, whatever both
+     *         players do. It only depends on which player holds the higher card.
+     */
+    public float maxUtility(int node, int deal, int player) {
+        int higher = card(deal, player) > card(deal, 1 - player) ? 1 : 0;
+        return maxUtility[(node * 2 + player) * 2 + higher];
+    }
+
+    /**
+     * @return Does the given player act at any decision node in the subtree of the node, including the node itself?
+     */
+    public boolean actsBelow(int node, int player) {
+        return (subtreePlayers[node] & 1 << player) != 0;
+    }
+
+    /**
+     * @return The number of nodes in the betting tree. The whole game tree, with the chance node at the top and a copy
+     *         of the betting tree for every deal, has 1 + numDeals * numNodes() nodes.
+     */
+    public int numNodes() {
+        return numNodes;
+    }
+
+    /**
+     * @return The number of bytes taken by the arrays describing the tree, without the object headers.
+     */
+    public long memoryFootprint() {
+        long bytes = type.length + player.length + depth.length + showdown.length;
+        bytes += (long) Integer.BYTES * (firstChild.length + bits.length + slot.length + terminal.length);
+        bytes += (long) Integer.BYTES * subtreeSize.length + (long) Float.BYTES * maxUtility.length;
+        bytes += subtreePlayers.length;
+        bytes += (long) Integer.BYTES * (dealCard1.length + dealCard2.length);
+        bytes += (long) Float.BYTES * (payoff.length + stake.length);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return numNodes + " nodes (" + numTerminals + " terminal) for " + numDeals + " deals, " + memoryFootprint()
+                + " bytes";
+    }
+}
@@ -0,0 +1,446 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class of the information set stores which map every (card, history) pair to a dense integer index, see
+ * ArrayInfoSetStore. It keeps everything which doesn't depend on the number format of the sums: which information
+ * sets have been visited and the reach probabilities of the running iteration. The subclasses decide how the regret
+ * sums, strategy sums, reach probability sums and current strategies are stored (see Precision).
+ * <p>
+ * The index of an information set is card * numHistories + slot, where slot is the position of the history in a
+ * binary tree of betting sequences (see KuhnPokerCFR.historySlot(...)). The values of action a at index i are stored
+ * at position i * numActions + a.
+ * <p>
+ * nextStrategies(...) only updates the information sets which have been touched, i.e. looked up with getIndex(...),
+ * since the last update, so that its cost grows with the number of visited nodes instead of the size of the table.
+ * This matters for the sampling algorithms, which only visit a few information sets per iteration. An information set
+ * which hasn't been reached in an iteration has a reach probability of 0, so its update only discounts its sums, which
+ * doesn't change its strategy or its average strategy. These discounts are therefore applied lazily, all at once, when
+ * the information set is touched or read the next time (see catchUp(...)). Rules whose regret factors aren't constant
+ * (e.g. linear CFR) need the products of the factors over many iterations, for which the store keeps the sums of their
+ * logarithms, one double per iteration and sign. Only the sums since the oldest iteration to which an information set
+ * may still have to be brought up are kept: every LOG_WINDOW iterations, all information sets are brought up to date
+ * and the sums are rebased, so that they take a bounded amount of memory however long the training runs.
+ * @author Max Jappert
+ */
+public abstract class IndexedInfoSetStore implements InfoSetStore {
+    // The maximum number of iterations covered by the sums of the logarithms of the regret factors, see rebaseLogs().
+    static final int LOG_WINDOW = 1024;
+
+    final int numActions;
+    final int numCards;
+    final int numHistories;
+    final int capacity;
+
+    float[] reachProb;
+
+    boolean[] visited;
+    int size = 0;
+
+    // The information sets touched since their last update, in the order of their first touch, see touch(...).
+    int[] touched;
+    boolean[] isTouched;
+    int numTouched = 0;
+    // The last iteration whose update has been applied to each information set, and the last iteration for which
+    // nextStrategies(...) has been called for each player, or -1 before the first call.
+    int[] lastIteration;
+    int[] finished = {-1, -1};
+
+    // The rule of the last call of nextStrategies(...), and the sums of the logarithms of its factors for the positive
+    // and the negative regrets over the iterations logBase + 1 to logBase + k at position k, which are known up to
+    // position numLogs - 1. No information set is behind iteration logBase.
+    UpdateRule rule;
+    double[] positiveLogs = new double[1];
+    double[] negativeLogs = new double[1];
+    int numLogs = 1;
+    int logBase = 0;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    protected IndexedInfoSetStore(int numCards, int numHistories) {
+        this.numActions = KuhnPokerCFR.numActions;
+        this.numCards = numCards;
+        this.numHistories = numHistories;
+        this.capacity = numCards * numHistories;
+
+        reachProb = new float[capacity];
+        visited = new boolean[capacity];
+        touched = new int[capacity];
+        isTouched = new boolean[capacity];
+        lastIteration = new int[capacity];
+    }
+
+    @Override
+    public int getIndex(int card, int depth, int bits) {
+        int index = indexOf(card, depth, bits);
+
+        touch(index);
+
+        return index;
+    }
+
+    /**
+     * Same as getIndex(...), but without marking the information set as visited. Unlike getIndex(...) this doesn't
+     * modify the store, so it can be called by several threads at once.
+     */
+    public int indexOf(int card, int depth, int bits) {
+        return card * numHistories + KuhnPokerCFR.historySlot(depth, bits);
+    }
+
+    @Override
+    public int findIndex(int card, int depth, int bits) {
+        int index = indexOf(card, depth, bits);
+
+        if (!visited[index]) {
+            return -1;
+        }
+
+        catchUp(index);
+
+        return index;
+    }
+
+    /**
+     * Marks the information set as visited, so that it takes part in nextStrategies(...) and appears in toMap().
+     * @param index Index of the information set.
+     */
+    void markVisited(int index) {
+        if (!visited[index]) {
+            visited[index] = true;
+            size++;
+        }
+    }
+
+    /**
+     * Marks the information set as visited and brings it up to date, so that it is updated by the next call of
+     * nextStrategies(...) for its player.
+     * @param index Index of the information set.
+     */
+    void touch(int index) {
+        markVisited(index);
+
+        if (!isTouched[index]) {
+            isTouched[index] = true;
+            touched[numTouched++] = index;
+            catchUp(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Applies the updates of the iterations in which the information set hasn't been touched, i.e. the discounts of
+     * its sums, see the description of the class.
+     * @param index Index of the information set.
+     */
+    void catchUp(int index) {
+        int from = lastIteration[index];
+        int to = finished[player(index)];
+
+        if (from >= to) {
+            return;
+        }
+
+        // The strategy sum factors of the iterations from + 1 to t multiply to (from / t)^gamma.
+        double strategySumFactor = Math.pow((double) from / to, rule.gamma);
+
+        nextStrategy(index, strategySumFactor, factorProduct(rule.alpha, positiveLogs, from - logBase, to - logBase),
+                factorProduct(rule.beta, negativeLogs, from - logBase, to - logBase));
+        lastIteration[index] = to;
+    }
+
+    /**
+     * Brings every information set up to date, e.g. before the sums are read directly by several threads.
+     */
+    public void catchUp() {
+        for (int index = 0; index < capacity; index++) {
+            if (visited[index]) {
+                catchUp(index);
+            }
+        }
+    }
+
+    /**
+     * @return The product of the regret factors of the iterations from + 1 to t, see UpdateRule.
+     */
+    private static double factorProduct(double exponent, double[] logs, int from, int to) {
+        if (exponent == Double.POSITIVE_INFINITY) {
+            return 1;
+        } else if (exponent == Double.NEGATIVE_INFINITY) {
+            return 0;
+        }
+
+        return Math.exp(logs[to] - logs[from]);
+    }
+
+    /**
+     * Extends the sums of the logarithms of the regret factors up to the given iteration, first rebasing them if they
+     * would cover more than LOG_WINDOW iterations.
+     */
+    private void extendLogs(int iteration) {
+        if (iteration - logBase > LOG_WINDOW) {
+            rebaseLogs();
+        }
+
+        int end = iteration - logBase;
+
+        if (end >= positiveLogs.length) {
+            int length = Math.max(end + 1, Math.min(2 * positiveLogs.length, LOG_WINDOW + 1));
+            positiveLogs = Arrays.copyOf(positiveLogs, length);
+            negativeLogs = Arrays.copyOf(negativeLogs, length);
+        }
+
+        for (; numLogs <= end; numLogs++) {
+            int t = logBase + numLogs;
+            // log(t^e / (t^e + 1)) = -log(1 + t^-e)
+            positiveLogs[numLogs] = positiveLogs[numLogs - 1] - Math.log1p(Math.pow(t, -rule.alpha));
+            negativeLogs[numLogs] = negativeLogs[numLogs - 1] - Math.log1p(Math.pow(t, -rule.beta));
+        }
+    }
+
+    /**
+     * Brings every information set up to date and drops the sums of the logarithms of the iterations before the
+     * oldest one which an information set may still have to be brought up from, i.e. the last finished iteration of
+     * the player who is behind. Information sets which haven't been visited have no sums to discount, so they are
+     * only moved forward.
+     */
+    private void rebaseLogs() {
+        for (int index = 0; index < capacity; index++) {
+            if (visited[index]) {
+                catchUp(index);
+            } else {
+                lastIteration[index] = Math.max(lastIteration[index], finished[player(index)]);
+            }
+        }
+
+        int shift = Math.min(finished[0], finished[1]) - logBase;
+
+        if (shift <= 0) {
+            return;
+        }
+
+        int kept = Math.max(numLogs - shift, 1);
+
+        for (int k = 0; k < kept; k++) {
+            positiveLogs[k] = positiveLogs[k + shift] - positiveLogs[shift];
+            negativeLogs[k] = negativeLogs[k + shift] - negativeLogs[shift];
+        }
+
+        logBase += shift;
+        numLogs = kept;
+    }
+
+    /**
+     * Updates the strategy sums, regret sums and reach probability sum of a single information set at the end of an
+     * iteration and computes its strategy for the next round.
+     * @param index Index of the information set.
+     * @param strategySumFactor The factor by which the strategy sums and the reach probability sum are multiplied
+     *                          before the current strategy, weighted by the reach probability, is added.
+     * @param positiveFactor The factor by which the positive regret sums are multiplied.
+     * @param negativeFactor The factor by which the negative regret sums are multiplied.
+     */
+    abstract void nextStrategy(int index, double strategySumFactor, double positiveFactor, double negativeFactor);
+
+    /**
+     * Only the information sets touched since their last update are updated, the others are brought up to date when
+     * they are used again, see the description of the class. If the iteration doesn't follow the last one, e.g.
+     * because a new training run has been started on this store, all information sets are first brought up to date
+     * with the previous run.
+     */
+    @Override
+    public void nextStrategies(UpdateRule rule, int iteration, int player) {
+        if (finished[0] == -1 || iteration <= finished[player == -1 ? 0 : player]) {
+            if (finished[0] != -1) {
+                catchUp();
+            }
+
+            Arrays.fill(lastIteration, iteration - 1);
+            finished[0] = iteration - 1;
+            finished[1] = iteration - 1;
+            logBase = iteration - 1;
+            numLogs = 1;
+        }
+
+        if (rule != this.rule) {
+            this.rule = rule;
+            numLogs = 1;
+        }
+
+        // The factors of infinite exponents are constant, see factorProduct(...).
+        if (!Double.isInfinite(rule.alpha) || !Double.isInfinite(rule.beta)) {
+            extendLogs(iteration);
+        }
+
+        double strategySumFactor = Math.pow((iteration - 1.0) / iteration, rule.gamma);
+        double positiveFactor = rule.positiveRegretFactor(iteration);
+        double negativeFactor = rule.negativeRegretFactor(iteration);
+
+        // The information sets of the other player stay in the list until their own update.
+        int remaining = 0;
+
+        for (int k = 0; k < numTouched; k++) {
+            int index = touched[k];
+
+            if (player != -1 && player(index) != player) {
+                touched[remaining++] = index;
+                continue;
+            }
+
+            nextStrategy(index, strategySumFactor, positiveFactor, negativeFactor);
+            lastIteration[index] = iteration;
+            isTouched[index] = false;
+        }
+
+        numTouched = remaining;
+
+        if (player == -1) {
+            finished[0] = iteration;
+            finished[1] = iteration;
+        } else {
+            finished[player] = iteration;
+        }
+    }
+
+    /**
+     * Overwrites the probability of playing the action according to the current strategy, see calcStrategy(...).
+     */
+    abstract void setStrategy(int index, int action, float probability);
+
+    /**
+     * Same as InformationSet.getAverageStrategy(), but for a single action.
+     */
+    @Override
+    public float getAverageStrategy(int index, int action) {
+        float reachProbSum = getReachProbSum(index);
+
+        if (reachProbSum == 0) {
+            return 1.0f / numActions;
+        }
+
+        float totalStrategySum = 0;
+
+        for (int a = 0; a < numActions; a++) {
+            totalStrategySum += getStrategySum(index, a) / reachProbSum;
+        }
+
+        return getStrategySum(index, action) / reachProbSum / totalStrategySum;
+    }
+
+    @Override
+    public void addReachProb(int index, float reachProb) {
+        this.reachProb[index] += reachProb;
+    }
+
+    /**
+     * Same as InformationSet.calcStrategy(), but without allocating a temporary array.
+     */
+    @Override
+    public void calcStrategy(int index) {
+        float normalizingValue = 0;
+
+        for (int a = 0; a < numActions; a++) {
+            normalizingValue += Math.max(getRegretSum(index, a), 0);
+        }
+
+        for (int a = 0; a < numActions; a++) {
+            if (normalizingValue != 0) {
+                setStrategy(index, a, Math.max(getRegretSum(index, a), 0) / normalizingValue);
+            } else {
+                setStrategy(index, a, 1.0f / numActions);
+            }
+        }
+    }
+
+    /**
+     * Same as InformationSet.getProbability(...).
+     */
+    @Override
+    public float getProbability(int index, int action, float padding, float epsilon) {
+        float reachProbSum = getReachProbSum(index);
+        float p0 = getStrategySum(index, 0);
+        float p1 = getStrategySum(index, 1);
+
+        if (reachProbSum != 0) {
+            p0 = p0 / reachProbSum + 0.2f;
+            p1 = p1 / reachProbSum + 0.2f;
+        }
+
+        float normalizingSum = p0 + p1;
+        float probability;
+
+        if (normalizingSum > 0) {
+            probability = ((action == 0 ? p0 : p1) + padding) / (normalizingSum + padding);
+        } else {
+            probability = (1 + padding) / (2 + padding);
+        }
+
+        return Math.max(probability, epsilon);
+    }
+
+    @Override
+    public int player(int index) {
+        return KuhnPokerCFR.slotDepth(index % numHistories) % 2;
+    }
+
+    /**
+     * @return The number of bytes taken by the arrays of the store, without the object headers.
+     */
+    public long memoryFootprint() {
+        return (long) Float.BYTES * reachProb.length + visited.length
+                + (long) Integer.BYTES * (touched.length + lastIteration.length) + isTouched.length
+                + (long) Double.BYTES * (positiveLogs.length + negativeLogs.length);
+    }
+
+    /**
+     * @return The number of bytes per information set, see memoryFootprint().
+     */
+    public double bytesPerInfoSet() {
+        return (double) memoryFootprint() / capacity;
+    }
+
+    /**
+     * @param index Index of the information set.
+     * @return The key of the information set, e.g. "K rrc".
+     */
+    public String key(int index) {
+        return KuhnPokerCFR.cardString(index / numHistories, numCards) + " " + KuhnPokerCFR.historyString(index % numHistories);
+    }
+
+    /**
+     * Builds an InformationSet object for every visited index. The objects are copies, so changing them doesn't affect
+     * the store.
+     */
+    @Override
+    public Map<String, InformationSet> toMap() {
+        Map<String, InformationSet> iMap = new HashMap<>();
+
+        for (int index = 0; index < capacity; index++) {
+            if (!visited[index]) {
+                continue;
+            }
+
+            catchUp(index);
+
+            InformationSet is = new InformationSet(key(index));
+
+            for (int a = 0; a < numActions; a++) {
+                is.regretSum[a] = getRegretSum(index, a);
+                is.strategySum[a] = getStrategySum(index, a);
+                is.strategy[a] = getStrategy(index, a);
+            }
+
+            is.reachProb = reachProb[index];
+            is.reachProbSum = getReachProbSum(index);
+
+            iMap.put(is.key, is);
+        }
+
+        return iMap;
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.Map;
+
+/**
+ * Storage for the information sets visited during training. Every information set is addressed by an integer index,
+ * so that the traversal only has to resolve the (card, history) pair once per node and can then read and write the
+ * regrets and strategies through that index.
+ * @author Max Jappert
+ */
+public interface InfoSetStore {
+
+    /**
+     * Returns the index of the information set described by the given card and history. If the information set hasn't
+     * been visited before, it is created.
+     * @param card The card dealt to the player who is acting at the information set.
+     * @param depth The number of actions in the history preceding the information set.
+     * @param bits The actions in the history, see KuhnPokerCFR.historySlot(...).
+     * @return The index of the information set.
+     */
+    int getIndex(int card, int depth, int bits);
+
+    /**
+     * Same as getIndex(...), but the information set isn't created if it hasn't been visited yet.
+     * @return The index of the information set, or -1 if it hasn't been visited yet.
+     */
+    int findIndex(int card, int depth, int bits);
+
+    /**
+     * @return The number of information sets which have been visited so far.
+     */
+    int size();
+
+    /**
+     * @param index Index of the information set.
+     * @param action The action.
+     * @return The probability of playing the given action according to the current strategy.
+     */
+    float getStrategy(int index, int action);
+
+    /**
+     * @param index Index of the information set.
+     * @param action The action.
+     * @return The cumulative regret of the action.
+     */
+    float getRegretSum(int index, int action);
+
+    /**
+     * Overwrites the cumulative regret of the action, e.g. when loading a checkpoint.
+     */
+    void setRegretSum(int index, int action, float value);
+
+    /**
+     * @param index Index of the information set.
+     * @param action The action.
+     * @return The strategy sum of the action.
+     */
+    float getStrategySum(int index, int action);
+
+    /**
+     * Overwrites the strategy sum of the action, e.g. when loading a checkpoint.
+     */
+    void setStrategySum(int index, int action, float value);
+
+    /**
+     * @param index Index of the information set.
+     * @return The sum of the reach probabilities of the information set over all finished iterations.
+     */
+    float getReachProbSum(int index);
+
+    /**
+     * Overwrites the reach probability sum of the information set, e.g. when loading a checkpoint.
+     */
+    void setReachProbSum(int index, float value);
+
+    /**
+     * @param index Index of the information set.
+     * @param action The action.
+     * @return The probability of playing the given action according to the average strategy, see
+     *         InformationSet.getAverageStrategy(). If the information set has never been reached, this is the uniform
+     *         probability.
+     */
+    float getAverageStrategy(int index, int action);
+
+    /**
+     * Adds the given player's contribution to the reach probability of the information set for the current iteration.
+     * @param index Index of the information set.
+     * @param reachProb The reach probability.
+     */
+    void addReachProb(int index, float reachProb);
+
+    /**
+     * Adds the given value to the cumulative regret of an action.
+     * @param index Index of the information set.
+     * @param action The action.
+     * @param regret The (weighted) regret.
+     */
+    void addRegret(int index, int action, float regret);
+
+    /**
+     * Adds the current strategy, weighted by the given value, to the strategy sum of the information set and adds the
+     * weight to its reach probability sum. This is used by the sampling algorithms, which update the average strategy
+     * while traversing the tree instead of in nextStrategies(...).
+     * @param index Index of the information set.
+     * @param weight The weight of the current strategy.
+     */
+    void addToAverage(int index, float weight);
+
+    /**
+     * Recomputes the current strategy of the information set from its cumulative regrets.
+     * @param index Index of the information set.
+     */
+    void calcStrategy(int index);
+
+    /**
+     * See InformationSet.getProbability(...).
+     */
+    float getProbability(int index, int action, float padding, float epsilon);
+
+    /**
+     * @param index Index of the information set.
+     * @return The player acting at the information set (0 for player 1, 1 for player 2).
+     */
+    int player(int index);
+
+    /**
+     * Computes the strategy for the next round for every visited information set of the given player, after
+     * discounting the regrets and the strategy sum according to the given rule.
+     * @param rule The update rule.
+     * @param iteration The iteration which has just finished, starting at 1.
+     * @param player The player whose information sets are updated, or -1 for both players.
+     */
+    void nextStrategies(UpdateRule rule, int iteration, int player);
+
+    /**
+     * Sets the strategy sum of every visited information set to 0.
+     */
+    void resetStrategySums();
+
+    /**
+     * Builds a map with the keys of the visited information sets (e.g. "K rrc") as keys and the information sets as
+     * values. This view is only needed for displaying or playing with the strategy, so it should not be called during
+     * training.
+     * @return The map of all visited information sets.
+     */
+    Map<String, InformationSet> toMap();
+}
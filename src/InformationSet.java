@@ -32,25 +32,39 @@ public class InformationSet {
      * Computes the next strategy by calling calcStrategy(). The strategySum is updated as in Zinkevic et al. (2007)
      */
     public void nextStrategy() {
-        strategySum[0] += reachProb * strategy[0];
-        strategySum[1] += reachProb * strategy[1];
+        nextStrategy(UpdateRule.VANILLA, 1);
+    }
+
+    /**
+     * Same as nextStrategy(), but the regrets and the strategy sum are discounted according to the given rule first.
+     * @param rule The update rule.
+     * @param iteration The iteration which has just finished, starting at 1.
+     */
+    public void nextStrategy(UpdateRule rule, int iteration) {
+        float strategySumFactor = rule.strategySumFactor(iteration);
+        float positiveFactor = rule.positiveRegretFactor(iteration);
+        float negativeFactor = rule.negativeRegretFactor(iteration);
+
+        strategySum[0] = strategySum[0] * strategySumFactor + reachProb * strategy[0];
+        strategySum[1] = strategySum[1] * strategySumFactor + reachProb * strategy[1];
+
+        regretSum[0] *= regretSum[0] > 0 ? positiveFactor : negativeFactor;
+        regretSum[1] *= regretSum[1] > 0 ? positiveFactor : negativeFactor;
 
         strategy = calcStrategy();
 
-        reachProbSum += reachProb;
+        reachProbSum = reachProbSum * strategySumFactor + reachProb;
         reachProb = 0;
     }
 
     /**
-     * Computes the strategy for the next round by dividing the cumulative regret for each action by the total
-     * cumulative regret. If the cumulative regret is 0, the strategy is an equal probability distribution.
+     * Computes the strategy for the next round by dividing the positive cumulative regret for each action by the total
+     * positive cumulative regret. If the positive cumulative regret is 0, the strategy is an equal probability
+     * distribution. Negative regrets are kept, since the sampling algorithms rely on them.
      * @return The strategy for the next round.
      */
     public float[] calcStrategy() {
 
-        regretSum[0] = Math.max(regretSum[0], 0);
-        regretSum[1] = Math.max(regretSum[1], 0);
-
         float normalizingValue = 0;
 
         float[] temp_sum = new float[2];
@@ -1,9 +1,14 @@
-//import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
@@ -11,177 +16,1215 @@ import java.util.Random;
  * @author Max Jappert
  */
 public class KuhnPokerCFR {
+
+    /**
+     * The algorithms which can be used for training.
+     */
+    public enum Algorithm {
+        /** Vanilla CFR, which traverses the entire tree in every iteration. */
+        CFR,
+        /** CFR which skips branches at random, depending on the average strategy. */
+        MCCFR,
+        /**
+         * Outcome sampling MCCFR: In every iteration, a deal and the actions of both players are sampled, so that a
+         * single path through the tree is visited per player. The sampled utilities are weighted by the inverse of the
+         * probability of sampling them.
+         */
+        OUTCOME_SAMPLING,
+        /**
+         * External sampling MCCFR: In every iteration, a deal and the actions of the opponent are sampled, while all
+         * actions of the player whose regrets are updated are traversed.
+         */
+        EXTERNAL_SAMPLING,
+        /**
+         * CFR over the public tree: Since the betting is public, every betting sequence is visited only once per
+         * iteration for all deals together, carrying the reach probabilities of every card of both players as vectors
+         * (ranges). The result is the same as with CFR, except for UpdateRule.VANILLA, where the positive part of the
+         * regret is taken after summing over the opponent's cards and the strategies are only updated at the end of
+         * the iteration.
+         */
+        PUBLIC_TREE
+    }
+
     static int numActions = 2;
-    static int numCards = 3;
-    Map<String, InformationSet> iMap;
+    // The number of cards of the original game, J, Q and K.
+    static final int DEFAULT_NUM_CARDS = 3;
+    // The maximum number of actions in a betting sequence, i.e. the length of the longest history after "rr".
+    static int maxDepth = 3;
+    // The number of history slots per card needed to index every decision node (see historySlot(...)).
+    static int numHistories = (1 << maxDepth) - 1;
+    // The probability with which outcome sampling picks an action uniformly at random instead of according to the
+    // strategy of the player whose regrets are updated, so that every action keeps being sampled.
+    static float exploration = 0.6f;
+    // The ranks and suits from which the cards are labelled, see cardString(...).
+    static final String RANKS = "23456789TJQKA";
+    static final String SUITS = "cdhs";
+    InfoSetStore store;
     int nIterations;
+    Algorithm algorithm;
     boolean mccfr;
+    boolean indexedStore;
+    // The number format of the indexed store. Only used if indexedStore is true.
+    Precision precision;
+    UpdateRule rule;
+    // The number of cards in the deck. Each player is dealt one card, and the higher card wins the showdown.
+    final int numCards;
+
+    // The betting tree, over which all algorithms walk by node index.
+    final GameTree tree;
+
+    // The player whose regrets and reach probabilities are updated by cfr(...), or -1 for both players. Only rules
+    // with alternating updates use a single player.
+    int updatePlayer = -1;
 
-    int nodesVisited = 0;
-    
-//    FileWriter fwc;
-//    FileWriter fwb;
+    // Counted in plain fields by the training thread and published to the metrics once per batch, see Metrics. The
+    // workers of trainParallel(...) have their own counts, which are added up after each batch.
+    long nodesVisited = 0;
+    long regretUpdates = 0;
+    // The number of nodes skipped by regret-based pruning, see setPruning(...).
+    long nodesPruned = 0;
+    // The latest exploitability computed by trainUntil(...) or exploitability(), or NaN.
+    float lastExploitability = Float.NaN;
+    Metrics.Recorder metrics = Metrics.DEFAULT.recorder("kuhn");
+
+    // The utilities of the actions at the node currently visited at each depth. Since the tree is traversed depth
+    // first, one buffer per depth suffices and no array has to be allocated when visiting a node.
+    float[][] actionUtils = new float[maxDepth][numActions];
+
+    // The buffers of publicTreeCfr(...) at each depth: the ranges of both players, the counterfactual values of every
+    // card of both players, the acting player's values after each action and the information sets of the acting
+    // player's cards.
+    float[][][] ranges;
+    float[][][] rangeValues;
+    float[][][] rangeActionValues;
+    int[][] rangeInfoSets;
+
+    // Only used for Monte Carlo sampling. The trainer is used by a single thread, so one instance suffices.
+    Random random = new Random();
+
+    // The probability of reaching the terminal node from the child last visited by outcomeSampling(...), given that
+    // the child has been reached.
+    float tail;
+
+    // Traces the strategies of selected information sets after each iteration, or null.
+    StrategyTrace trace;
+
+    // Should subtrees below actions with negative regret be skipped? See setPruning(...).
+    boolean pruning = false;
 
 
     public KuhnPokerCFR(boolean mccfr) throws IOException {
-//        File f1 = new File("plots/Krr_check.txt");
-//        File f2 = new File("plots/Krr_bet.txt");
-//
-//        f1.createNewFile();
-//        f2.createNewFile();
+        this(mccfr, false);
+    }
 
-//        fwc = new FileWriter(f1);
-//        fwb = new FileWriter(f2);
+    /**
+     * @param mccfr Should Monte Carlo sampling be used?
+     * @param indexedStore Should the information sets be kept in an ArrayInfoSetStore instead of a String-keyed map?
+     */
+    public KuhnPokerCFR(boolean mccfr, boolean indexedStore) throws IOException {
+        this(mccfr ? Algorithm.MCCFR : Algorithm.CFR, indexedStore);
+    }
+
+    /**
+     * @param algorithm The algorithm used for training.
+     * @param indexedStore Should the information sets be kept in an ArrayInfoSetStore instead of a String-keyed map?
+     */
+    public KuhnPokerCFR(Algorithm algorithm, boolean indexedStore) throws IOException {
+        this(algorithm, indexedStore, UpdateRule.VANILLA);
+    }
 
-        this.mccfr = mccfr;
+    /**
+     * @param algorithm The algorithm used for training.
+     * @param indexedStore Should the information sets be kept in an ArrayInfoSetStore instead of a String-keyed map?
+     * @param rule The rule for updating the regrets and strategy sums after each iteration. The sampling algorithms
+     *             only support UpdateRule.VANILLA, since the other rules discount every information set after each
+     *             iteration.
+     */
+    public KuhnPokerCFR(Algorithm algorithm, boolean indexedStore, UpdateRule rule) throws IOException {
+        this(algorithm, indexedStore, Precision.FLOAT, rule, new GameTree(DEFAULT_NUM_CARDS, numActions));
+    }
+
+    /**
+     * Same as KuhnPokerCFR(algorithm, true, rule), but the sums of the indexed store are kept in the given format.
+     * @param algorithm The algorithm used for training.
+     * @param precision The number format of the regret sums and strategy sums.
+     * @param rule The rule for updating the regrets and strategy sums after each iteration.
+     */
+    public KuhnPokerCFR(Algorithm algorithm, Precision precision, UpdateRule rule) throws IOException {
+        this(algorithm, precision, rule, DEFAULT_NUM_CARDS);
+    }
+
+    /**
+     * Kuhn poker with a deck of the given size instead of J, Q and K. Every decision node still has the same betting
+     * sequences, but there are numCards * (numCards - 1) deals, so the number of information sets grows linearly and
+     * the number of deals quadratically with the deck. Vanilla CFR visits every deal in every iteration, while
+     * PUBLIC_TREE handles all deals of a betting sequence at once with O(numCards) work per node.
+     * @param algorithm The algorithm used for training.
+     * @param precision The number format of the regret sums and strategy sums.
+     * @param rule The rule for updating the regrets and strategy sums after each iteration.
+     * @param numCards The number of cards in the deck, at least 2.
+     */
+    public KuhnPokerCFR(Algorithm algorithm, Precision precision, UpdateRule rule, int numCards) throws IOException {
+        this(algorithm, true, precision, rule, newTree(numCards));
+    }
+
+    /**
+     * @param tree The betting tree, which is only read during training and can therefore be shared between trainers.
+     */
+    private KuhnPokerCFR(Algorithm algorithm, boolean indexedStore, Precision precision, UpdateRule rule, GameTree tree)
+            throws IOException {
+        if (rule != UpdateRule.VANILLA && (algorithm == Algorithm.OUTCOME_SAMPLING || algorithm == Algorithm.EXTERNAL_SAMPLING)) {
+            throw new IllegalArgumentException(rule + " can't be used with " + algorithm + ".");
+        }
+
+        this.algorithm = algorithm;
+        this.mccfr = algorithm == Algorithm.MCCFR;
+        this.indexedStore = indexedStore;
+        this.precision = precision;
+        this.rule = rule;
+        this.numCards = tree.numCards;
+        this.tree = tree;
+
+        ranges = new float[maxDepth + 1][2][numCards];
+        rangeValues = new float[maxDepth + 1][2][numCards];
+        rangeActionValues = new float[maxDepth][numActions][numCards];
+        rangeInfoSets = new int[maxDepth][numCards];
+    }
+
+    private static GameTree newTree(int numCards) {
+        if (numCards < 2) {
+            throw new IllegalArgumentException("The deck must have at least 2 cards, not " + numCards + ".");
+        }
+
+        return new GameTree(numCards, numActions);
+    }
+
+    /**
+     * @return A new, empty store of the kind selected in the constructor.
+     */
+    InfoSetStore newStore() {
+        return indexedStore ? precision.newStore(numCards, numHistories) : new MapInfoSetStore(numCards);
+    }
+
+    /**
+     * Traces the strategies and regrets of selected information sets after every iteration of the following training
+     * runs. The trace isn't closed by the trainer.
+     * @param trace The trace, or null to stop tracing.
+     */
+    public void setTrace(StrategyTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Turns regret-based pruning on or off for the following training runs. When an information set is visited and
+     * one of its actions is never played, because its cumulative regret is 0, the subtree below the action isn't
+     * traversed if the acting player doesn't act anywhere in it and the action can't gain anything: its payoff is at
+     * most the largest payoff in its subtree (see GameTree.maxUtility(...)), and if that bound is at most the utility
+     * of the information set, the regret of the action in this visit is at most 0. The rule adds only the positive
+     * part of each regret, so the regret stays 0 just as if the subtree had been traversed. The opponent's regrets
+     * below the action are weighted by the action's reach probability, which is 0, so they don't change either, and
+     * when both players are updated in the same traversal, the opponent's reach probabilities below the action are
+     * still added to its information sets by a walk which skips the terminal nodes. Pruned and unpruned runs therefore
+     * compute the same strategies, see PruningBenchmark.
+     * <p>
+     * Pruning is only supported by full-width CFR with an update rule which clips every regret update at 0, i.e.
+     * UpdateRule.VANILLA. With the other rules the regrets can become negative, so a pruned visit would have to charge
+     * the action with the bound instead of its actual regret, which is never corrected. This also holds for CFR+,
+     * which only floors the sum of the updates of an iteration, whereas an information set may be pruned in some deals
+     * of the iteration and traversed in others. See also prunedFraction().
+     * @param pruning Should subtrees be pruned?
+     */
+    public void setPruning(boolean pruning) {
+        if (pruning && algorithm != Algorithm.CFR) {
+            throw new IllegalArgumentException("Only " + Algorithm.CFR + " supports pruning, not " + algorithm + ".");
+        }
+
+        if (pruning && !rule.clipped) {
+            throw new IllegalArgumentException("Pruning is only exact with " + UpdateRule.VANILLA + " regrets, not "
+                    + rule + ".");
+        }
+
+        this.pruning = pruning;
+    }
+
+    /**
+     * @return The fraction of the nodes which have been skipped by pruning since this object was created, i.e. the
+     *         pruned nodes divided by the visited and pruned nodes.
+     */
+    public double prunedFraction() {
+        return nodesPruned == 0 ? 0 : (double) nodesPruned / (nodesVisited + nodesPruned);
     }
 
     /**
      * As the starting point of self-play, this method must be called to start the training (self-play) process.
      */
     public void train(int iterations) throws IOException {
-        iMap = new HashMap<>();
+        store = newStore();
+        nIterations = iterations;
+
+        iterate(0, nIterations);
+    }
+
+    /**
+     * Same as train(iterations), but the information sets are kept in the given store, e.g. an OffHeapInfoSetStore
+     * for tables which don't fit into the heap. If the store already contains information sets, training continues
+     * from them. An OffHeapInfoSetStore also knows for how many iterations it has been trained, so that the discounts
+     * of the update rule continue from there. Other stores would start again at the first iteration, which is only
+     * the same for UpdateRule.VANILLA, so they must be empty for the other rules.
+     * @param store The store in which the information sets are kept.
+     * @param iterations The number of additional iterations.
+     */
+    public void train(InfoSetStore store, int iterations) throws IOException {
+        OffHeapInfoSetStore offHeap = store instanceof OffHeapInfoSetStore ? (OffHeapInfoSetStore) store : null;
+        int start = offHeap != null ? offHeap.iterations : 0;
+
+        if (offHeap == null && store.size() > 0 && rule != UpdateRule.VANILLA) {
+            throw new IllegalArgumentException(rule + " can't continue training on a store which doesn't know for how "
+                    + "many iterations it has been trained.");
+        }
+
+        this.store = store;
+        nIterations = start + iterations;
+
+        iterate(start, iterations);
+
+        if (offHeap != null) {
+            offHeap.iterations = nIterations;
+        }
+    }
+
+    /**
+     * Same as train(iterations), but the information sets are saved to the checkpoint every saveInterval iterations
+     * and after the last iteration. Only the first save writes the complete table, later saves only append the
+     * information sets which have changed.
+     * @param iterations The number of iterations.
+     * @param checkpoint The checkpoint to which the information sets are saved.
+     * @param saveInterval The number of iterations between two saves.
+     */
+    public void train(int iterations, Checkpoint checkpoint, int saveInterval) throws IOException {
+        checkDeck(checkpoint);
+        store = newStore();
+        nIterations = iterations;
+
+        iterateWithCheckpoints(0, iterations, checkpoint, saveInterval);
+    }
+
+    /**
+     * Loads the information sets from the checkpoint and continues training from there. Only the random state of
+     * the sampling algorithms isn't restored.
+     * @param checkpoint The checkpoint from which training is resumed and to which the progress is saved.
+     * @param iterations The number of additional iterations.
+     * @param saveInterval The number of iterations between two saves.
+     */
+    public void resume(Checkpoint checkpoint, int iterations, int saveInterval) throws IOException {
+        int start = load(checkpoint);
+        nIterations = start + iterations;
+
+        iterateWithCheckpoints(start, iterations, checkpoint, saveInterval);
+    }
+
+    /**
+     * Loads the information sets from the checkpoint without training, e.g. for playing with the trained strategy.
+     * @param checkpoint The checkpoint.
+     * @return The number of iterations the checkpoint has been trained for.
+     */
+    public int load(Checkpoint checkpoint) throws IOException {
+        checkDeck(checkpoint);
+        store = newStore();
+        nIterations = checkpoint.load(store);
+        return nIterations;
+    }
+
+    private void checkDeck(Checkpoint checkpoint) {
+        if (checkpoint.numCards != numCards) {
+            throw new IllegalArgumentException("The checkpoint is for a deck of " + checkpoint.numCards
+                    + " cards, but the game has " + numCards + " cards.");
+        }
+    }
+
+    private void iterateWithCheckpoints(int start, int iterations, Checkpoint checkpoint, int saveInterval) throws IOException {
+        for (int i = start; i < start + iterations; i += saveInterval) {
+            int chunk = Math.min(saveInterval, start + iterations - i);
+
+            iterate(i, chunk);
+            checkpoint.save(store, i + chunk);
+        }
+    }
+
+    /**
+     * Trains until the exploitability of the average strategy drops below the given target or the time budget runs out,
+     * whichever happens first. The exploitability is computed every checkInterval iterations, so the interval should be
+     * large enough for the check to be cheap compared to training.
+     * @param targetExploitability The exploitability at which training stops.
+     * @param timeBudgetMillis The maximum training time in milliseconds.
+     * @param checkInterval The number of iterations between two computations of the exploitability.
+     * @return The exploitability of the average strategy when training stopped.
+     */
+    public float trainUntil(float targetExploitability, long timeBudgetMillis, int checkInterval) throws IOException {
+        store = newStore();
+        nIterations = 0;
+
+        BestResponse bestResponse = new BestResponse(numCards);
+        long deadline = System.currentTimeMillis() + timeBudgetMillis;
+        float exploitability;
+
+        do {
+            iterate(nIterations, checkInterval);
+            nIterations += checkInterval;
+
+            exploitability = bestResponse.exploitability(store);
+            lastExploitability = exploitability;
+            metrics.exploitability(exploitability);
+        } while (exploitability > targetExploitability && System.currentTimeMillis() < deadline);
+
+        return exploitability;
+    }
+
+    /**
+     * @return The exploitability of the average strategy computed by the last training, see BestResponse.
+     */
+    public float exploitability() {
+        lastExploitability = new BestResponse(numCards).exploitability(store);
+        metrics.exploitability(lastExploitability);
+        return lastExploitability;
+    }
+
+    /**
+     * Compares the average strategies of two trainers of the same game, e.g. of a parallel and a single-threaded run.
+     * Note that in Kuhn poker only player 2's equilibrium strategy is unique, while player 1 has a whole family of
+     * equilibrium strategies, so two runs can converge to different strategies of player 1.
+     * @param other The other trainer.
+     * @param player The player whose information sets are compared (0 for player 1, 1 for player 2), or -1 for both.
+     * @return The largest difference between the probabilities of an action at an information set of the player.
+     *         Information sets which haven't been visited are played uniformly.
+     */
+    public float maxStrategyDifference(KuhnPokerCFR other, int player) {
+        if (other.numCards != numCards) {
+            throw new IllegalArgumentException("The trainers play with decks of different sizes.");
+        }
+
+        float difference = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            for (int slot = 0; slot < numHistories; slot++) {
+                int depth = slotDepth(slot);
+                int bits = slotBits(slot);
+
+                if (isTerminal(depth, bits) || (player != -1 && depth % 2 != player)) {
+                    continue;
+                }
+
+                int index = store.findIndex(card, depth, bits);
+                int otherIndex = other.store.findIndex(card, depth, bits);
+
+                for (int a = 0; a < numActions; a++) {
+                    float p = index == -1 ? 1.0f / numActions : store.getAverageStrategy(index, a);
+                    float q = otherIndex == -1 ? 1.0f / numActions : other.store.getAverageStrategy(otherIndex, a);
+                    difference = Math.max(difference, Math.abs(p - q));
+                }
+            }
+        }
+
+        return difference;
+    }
+
+    /**
+     * Runs the given number of training iterations on the current store.
+     * @param start The index of the first iteration.
+     * @param iterations The number of iterations to run.
+     */
+    void iterate(int start, int iterations) throws IOException {
+        for (int batch = start; batch < start + iterations; batch += Metrics.BATCH_SIZE) {
+            int batchIterations = Math.min(Metrics.BATCH_SIZE, start + iterations - batch);
+
+            TrainingBatchEvent event = metrics.beginBatch();
+
+            long startTime = System.nanoTime();
+            long startBytes = Metrics.allocatedBytes();
+            long startNodes = nodesVisited;
+            long startUpdates = regretUpdates;
+            int startInfoSets = store.size();
+
+            iterateBatch(batch, batchIterations);
+
+            metrics.recordBatch(event, algorithm.toString(), batch, batchIterations,
+                    System.nanoTime() - startTime, nodesVisited - startNodes, store.size() - startInfoSets,
+                    regretUpdates - startUpdates, Metrics.allocatedBytes() - startBytes, lastExploitability);
+        }
+    }
+
+    /**
+     * Same as iterate(...), without publishing the metrics.
+     */
+    private void iterateBatch(int start, int iterations) throws IOException {
+        for (int i = start; i < start + iterations; i++) {
+
+            if (algorithm == Algorithm.OUTCOME_SAMPLING || algorithm == Algorithm.EXTERNAL_SAMPLING) {
+                // The sampling algorithms update the strategies and strategy sums while traversing, so only the
+                // sampled paths are visited.
+                for (int player = 0; player < 2; player++) {
+                    sample(store, player);
+                }
+            } else if (rule.alternating) {
+                // The regrets of player 2 are computed with the strategy player 1 has just been updated to.
+                for (int player = 0; player < 2; player++) {
+                    updatePlayer = player;
+                    rootUtil(store);
+                    store.nextStrategies(rule, i + 1, player);
+                }
+            } else {
+                // Starts traversing the tree at the chance node above the root of the betting tree.
+                rootUtil(store);
+
+                // For each information set, the strategy for the next round \sigma^T+1 is computed.
+                store.nextStrategies(rule, i + 1, -1);
+            }
+
+            if (mccfr && i == nIterations / 2) {
+                store.resetStrategySums();
+            }
+
+            if (trace != null) {
+                trace.record(store, i + 1);
+            }
+        }
+    }
+
+    /**
+     * Same as trainParallel(iterations, executor), using the common ForkJoinPool.
+     */
+    public void trainParallel(int iterations) throws IOException {
+        trainParallel(iterations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Trains like train(...), but the subtrees below the chance node, one for each deal, are traversed in parallel on
+     * the given executor. Each deal has its own worker, which reads the strategies of the current iteration from the
+     * shared ArrayInfoSetStore and accumulates its regrets and reach probabilities in a DeltaInfoSetStore. Once all
+     * deals are done, the deltas are merged in the order of the deals and the strategy for the next round is computed.
+     * <p>
+     * Since the strategies stay fixed during a traversal, player 1's strategy isn't updated after each visit like in
+     * train(...) with UpdateRule.VANILLA. The result therefore differs slightly from train(...), but it is bit-for-bit
+     * the same for every executor and number of threads, including a single thread. The sums are always kept as floats,
+     * whatever precision has been selected. Every delta is as large as the table, so the memory grows with the cube of
+     * the deck size, and large decks should be trained with PUBLIC_TREE instead.
+     * @param iterations The number of iterations.
+     * @param executor The executor on which the deals are traversed.
+     */
+    public void trainParallel(int iterations, ExecutorService executor) throws IOException {
+        if (algorithm != Algorithm.CFR && algorithm != Algorithm.MCCFR) {
+            throw new UnsupportedOperationException("Only CFR and MCCFR traverse the deals separately.");
+        }
+
+        ArrayInfoSetStore shared = new ArrayInfoSetStore(numCards, numHistories);
+        store = shared;
         nIterations = iterations;
 
-        for (int i = 0; i < nIterations; i++) {
+        List<Callable<Void>> deals = new ArrayList<>();
+        List<DeltaInfoSetStore> deltas = new ArrayList<>();
+        List<KuhnPokerCFR> workers = new ArrayList<>();
 
-            // Starts traversing the tree by calling the cfr(...) method on an empty history.
-            cfr(iMap, "", -1, -1, 1, 1, 1);
+        for (int d = 0; d < tree.numDeals; d++) {
+            int deal = d;
+            DeltaInfoSetStore delta = new DeltaInfoSetStore(shared);
+            KuhnPokerCFR worker = new KuhnPokerCFR(algorithm, true, Precision.FLOAT, rule, tree);
+            // Seeded from this trainer, so that a seeded run samples the same branches every time.
+            worker.random = new Random(random.nextLong());
+            worker.pruning = pruning;
 
-            // For each information set, the strategy for the next round \sigma^T+1 is computed.
-            for (Object o : iMap.values().toArray()) {
-                InformationSet is = (InformationSet) o;
-                is.nextStrategy();
+            deals.add(() -> {
+                worker.cfr(delta, GameTree.ROOT, deal, 1, 1, 1.0f / tree.numDeals);
+                return null;
+            });
+            deltas.add(delta);
+            workers.add(worker);
+        }
+
+        for (int batch = 0; batch < nIterations; batch += Metrics.BATCH_SIZE) {
+            int batchIterations = Math.min(Metrics.BATCH_SIZE, nIterations - batch);
+
+            TrainingBatchEvent event = metrics.beginBatch();
+
+            long startTime = System.nanoTime();
+            long startBytes = Metrics.allocatedBytes();
+            long startNodes = nodesVisited;
+            long startUpdates = regretUpdates;
+            int startInfoSets = shared.size();
+
+            for (int i = batch; i < batch + batchIterations; i++) {
+                for (int player = rule.alternating ? 0 : -1; player < (rule.alternating ? 2 : 0); player++) {
+                    // The chance node
+                    nodesVisited++;
+
+                    for (KuhnPokerCFR worker : workers) {
+                        worker.updatePlayer = player;
+                    }
+
+                    if (pruning) {
+                        // The workers read the regrets of information sets they haven't touched yet, which must
+                        // already include the discounts of the iterations in which they have been pruned.
+                        shared.catchUp();
+                    }
+
+                    invokeAll(executor, deals);
+
+                    // The fixed order of the merge makes the sums independent of which deal finished first.
+                    for (DeltaInfoSetStore delta : deltas) {
+                        delta.mergeInto();
+                    }
+
+                    shared.nextStrategies(rule, i + 1, player);
+                }
 
                 if (mccfr && i == nIterations / 2) {
-                    is.strategySum[0] = 0;
-                    is.strategySum[1] = 0;
+                    shared.resetStrategySums();
                 }
+            }
 
-//                if (is.key.equals("K rr")) {
-//                    fwc.write(is.strategy[0] + "\n");
-//                    fwb.write(is.strategy[1] + "\n");
-//                }
+            // The workers are idle between two iterations, and invokeAll(...) has made their counts visible.
+            for (KuhnPokerCFR worker : workers) {
+                nodesVisited += worker.nodesVisited;
+                regretUpdates += worker.regretUpdates;
+                nodesPruned += worker.nodesPruned;
+                worker.nodesVisited = 0;
+                worker.regretUpdates = 0;
+                worker.nodesPruned = 0;
             }
+
+            // Only the allocations of the calling thread are counted, not those of the workers.
+            metrics.recordBatch(event, algorithm + " (parallel)", batch, batchIterations,
+                    System.nanoTime() - startTime, nodesVisited - startNodes, shared.size() - startInfoSets,
+                    regretUpdates - startUpdates, Metrics.allocatedBytes() - startBytes, lastExploitability);
         }
-//        fwc.flush();
-//        fwb.flush();
-//
-//        fwb.close();
-//        fwc.close();
     }
 
     /**
-     * Method to traverse the tree by being called recursively.
-     * @param iMap The map containing the information sets as values. The keys are strings, containing information regarding
-     *             the dealt card and the history preceding the set.
-     * @param history The history representing the current point within the game tree.
-     * @param card1 Player 1's card.
-     * @param card2 Player 2's card.
+     * Same as trainHogwild(iterations, workers, executor), with one worker per processor on the common ForkJoinPool.
+     */
+    public void trainHogwild(int iterations) throws IOException {
+        trainHogwild(iterations, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Trains with the sampling algorithm like train(...), but the iterations are split among the given number of
+     * workers, which run at the same time and update one AtomicInfoSetStore without ever waiting for each other (see
+     * AtomicInfoSetStore). Each worker samples its share of the iterations with its own random, seeded from this
+     * trainer. Unlike with trainParallel(...), the result depends on how the threads interleave and is therefore not
+     * reproducible, but since the workers only add up sampled updates, it converges like a single-threaded run with
+     * the same total number of iterations.
+     * @param iterations The number of iterations of all workers together.
+     * @param workers The number of workers. Each one runs its share of the iterations as a single task, so they only
+     *                run at the same time if the executor has as many threads.
+     * @param executor The executor on which the workers run.
+     */
+    public void trainHogwild(int iterations, int workers, ExecutorService executor) throws IOException {
+        if (algorithm != Algorithm.OUTCOME_SAMPLING && algorithm != Algorithm.EXTERNAL_SAMPLING) {
+            throw new UnsupportedOperationException("Only the sampling algorithms update the table while traversing.");
+        }
+
+        if (workers < 1) {
+            throw new IllegalArgumentException("There must be at least one worker.");
+        }
+
+        AtomicInfoSetStore shared = new AtomicInfoSetStore(numCards, numHistories);
+        store = shared;
+        nIterations = iterations;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<KuhnPokerCFR> trainers = new ArrayList<>();
+
+        for (int w = 0; w < workers; w++) {
+            int share = iterations / workers + (w < iterations % workers ? 1 : 0);
+            AtomicInfoSetStore view = shared.view();
+            KuhnPokerCFR worker = new KuhnPokerCFR(algorithm, true, Precision.FLOAT, rule, tree);
+            worker.random = new Random(random.nextLong());
+            worker.store = view;
+
+            tasks.add(() -> {
+                for (int i = 0; i < share; i++) {
+                    for (int player = 0; player < 2; player++) {
+                        worker.sample(view, player);
+                    }
+                }
+                return null;
+            });
+            trainers.add(worker);
+        }
+
+        TrainingBatchEvent event = metrics.beginBatch();
+
+        long startTime = System.nanoTime();
+        long startBytes = Metrics.allocatedBytes();
+        long startNodes = nodesVisited;
+        long startUpdates = regretUpdates;
+
+        invokeAll(executor, tasks);
+
+        for (KuhnPokerCFR worker : trainers) {
+            nodesVisited += worker.nodesVisited;
+            regretUpdates += worker.regretUpdates;
+        }
+
+        // The whole run is recorded as a single batch, since the workers don't wait for each other between iterations.
+        metrics.recordBatch(event, algorithm + " (hogwild)", 0, iterations, System.nanoTime() - startTime,
+                nodesVisited - startNodes, shared.size(), regretUpdates - startUpdates,
+                Metrics.allocatedBytes() - startBytes, lastExploitability);
+    }
+
+    /**
+     * Runs all tasks on the executor and waits until they are finished.
+     * @param executor The executor.
+     * @param tasks The tasks.
+     */
+    private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A worker failed during training.", e.getCause());
+        }
+    }
+
+    /**
+     * Measures how many bytes the calling thread allocates per training iteration once training has reached a steady
+     * state. With an ArrayInfoSetStore and full-width CFR this is 0, since every node visit only works on primitives
+     * and preallocated buffers.
+     * @param warmup The number of iterations run before measuring.
+     * @param iterations The number of iterations which are measured.
+     * @return The average number of allocated bytes per iteration.
+     */
+    public double allocatedBytesPerIteration(int warmup, int iterations) throws IOException {
+        train(warmup);
+
+        long before = Metrics.allocatedBytes();
+        iterate(warmup, iterations);
+        long after = Metrics.allocatedBytes();
+
+        nIterations = warmup + iterations;
+
+        return (double) (after - before) / iterations;
+    }
+
+    /**
+     * Method to traverse the tree by being called recursively. The current node is given by its index in the betting
+     * tree and the deal, see GameTree.
+     * @param store The store containing the information sets.
+     * @param node The index of the current node in the betting tree.
+     * @param deal The index of the deal.
      * @param pr1 Player 1's contribution to the reach probability of the currently visited node.
      * @param pr2 Player 2's contribution to the reach probability of the currently visited node.
      * @param prC The chance node's contribution to the reach probability of the currently visited node.
      * @return Utility of the information set, i.e. how profitable it is to have visited this set.
      */
-    private float cfr(Map<String, InformationSet> iMap, String history, int card1, int card2, float pr1, float pr2, float prC) {
+    private float cfr(InfoSetStore store, int node, int deal, float pr1, float pr2, float prC) {
         nodesVisited++;
 
-        if (isChanceNode(history)) {
-            return chanceUtil(iMap);
+        if (tree.isTerminal(node)) {
+            return tree.payoff(node, deal);
         }
 
-        if (isTerminal(history)) {
-            return terminalUtil(history, card1, card2);
-        }
+        int depth = tree.depth[node];
+        int actingPlayer = tree.player[node];
+        boolean isPlayer1 = actingPlayer == 0;
+        // With alternating updates, the other player's information sets are only traversed to compute the utilities.
+        boolean update = updatePlayer == -1 || updatePlayer == actingPlayer;
 
-        int n = history.length();
-        boolean isPlayer1 = n % 2 == 0;
-
-        InformationSet infoSet = getInfoSet(iMap, isPlayer1 ? card1 : card2, history);
+        int infoSet = store.getIndex(tree.card(deal, actingPlayer), depth, tree.bits[node]);
 
-        float[] strategy = infoSet.strategy;
-
-        // If monte carlo cfr is activated, then the regret is only calculated for one player at a time, in an alternating fashion.
-        // This condition checks if mccfr is activated and if the regret should therefore be calculated for a player.
-        if (isPlayer1) {
-            infoSet.reachProb += pr1;
-        } else {
-            infoSet.reachProb += pr2;
+        if (update) {
+            if (isPlayer1) {
+                store.addReachProb(infoSet, pr1);
+            } else {
+                store.addReachProb(infoSet, pr2);
+            }
         }
 
-        float[] actionUtils = new float[numActions];
+        float[] utils = actionUtils[depth];
+        int child = tree.firstChild[node];
+        // The actions which may be pruned, one bit per action, see setPruning(...).
+        int pruned = 0;
 
         for (int i = 0; i < numActions; i++) {
-
-            float probability;
+            if (pruning && update && store.getStrategy(infoSet, i) == 0 && store.getRegretSum(infoSet, i) <= 0
+                    && !tree.actsBelow(child + i, actingPlayer)) {
+                // Whether the subtree is skipped is decided below, once the utility of the information set is known.
+                pruned |= 1 << i;
+                utils[i] = 0;
+                continue;
+            }
 
             // If we're using monte carlo sampling, then we only traverse a given branch with a certain probability,
             // i.e. we only sample the tree instead of fully traversing it. If we don't use sampling, then we traverse
             // the entire tree for every iteration, i.e. we traverse a given branch with a probability of 1.
-            if (mccfr) {
-                probability = infoSet.getProbability(i, 0, 0.05f);
+            if (!mccfr || random.nextFloat() < store.getProbability(infoSet, i, 0, 0.05f)) {
+                if (isPlayer1) {
+                    utils[i] = -1 * cfr(store, child + i, deal, pr1 * store.getStrategy(infoSet, i), pr2, prC);
+                } else {
+                    utils[i] = -1 * cfr(store, child + i, deal, pr1, pr2 * store.getStrategy(infoSet, i), prC);
+                }
             } else {
-                probability = 1;
+                utils[i] = 0;
             }
+        }
 
-            if (new Random().nextFloat() < probability) {
-                String nextHistory = history + new char[]{'c', 'b'}[i];
+        float util = utils[0] * store.getStrategy(infoSet, 0) + utils[1] * store.getStrategy(infoSet, 1);
+        float prOpponent = isPlayer1 ? pr2 : pr1;
 
-                if (isPlayer1) {
-                    actionUtils[i] = -1 * cfr(iMap, nextHistory, card1, card2, pr1 * strategy[i], pr2, prC);
-                } else {
-                    actionUtils[i] = -1 * cfr(iMap, nextHistory, card1, card2, pr1, pr2 * strategy[i], prC);
-                }
+        for (int i = 0; pruned != 0 && i < numActions; i++) {
+            if ((pruned & 1 << i) == 0) {
+                continue;
+            }
+
+            // The action is never played, so the utility is the same without it. Its regret in this visit is at most
+            // the bounded one, so if that keeps the regret at 0, the clipped update is 0 with the actual payoff too.
+            float maxUtil = tree.maxUtility(child + i, deal, actingPlayer);
+
+            if (store.getRegretSum(infoSet, i) + prOpponent * prC * (maxUtil - util) <= 0) {
+                // When both players are updated in the same traversal, the opponent's reach below the action still
+                // counts towards its average strategy.
+                utils[i] = maxUtil;
+                int walked = updatePlayer == -1 ? addReachBelow(store, child + i, deal, prOpponent) : 0;
+                nodesPruned += tree.subtreeSize[child + i] - walked;
+            } else if (isPlayer1) {
+                utils[i] = -1 * cfr(store, child + i, deal, 0, pr2, prC);
             } else {
-                actionUtils[i] = 0;
+                utils[i] = -1 * cfr(store, child + i, deal, pr1, 0, prC);
             }
         }
 
-        float util = actionUtils[0] * strategy[0] + actionUtils[1] * strategy[1];
-        float[] regrets = new float[2];
-        regrets[0] = actionUtils[0] - util;
-        regrets[1] = actionUtils[1] - util;
+        float regret0 = utils[0] - util;
+        float regret1 = utils[1] - util;
+
+        if (!update) {
+            return util;
+        }
+
+        regretUpdates += numActions;
 
-        if (isPlayer1) {
-            infoSet.regretSum[0] += Math.max(pr2 * prC * regrets[0], 0);
-            infoSet.regretSum[1] += Math.max(pr2 * prC * regrets[1], 0);
-            infoSet.calcStrategy();
+        if (rule.clipped) {
+            store.addRegret(infoSet, 0, Math.max(prOpponent * prC * regret0, 0));
+            store.addRegret(infoSet, 1, Math.max(prOpponent * prC * regret1, 0));
+
+            if (isPlayer1) {
+                store.calcStrategy(infoSet);
+            }
         } else {
-            infoSet.regretSum[0] += Math.max(pr1 * prC * regrets[0], 0);
-            infoSet.regretSum[1] += Math.max(pr1 * prC * regrets[1], 0);
+            store.addRegret(infoSet, 0, prOpponent * prC * regret0);
+            store.addRegret(infoSet, 1, prOpponent * prC * regret1);
         }
 
         return util;
     }
 
     /**
-     * If the history is an empty string, then the given node is trivially a chance node
-     * @param history The history descibing the node
-     * @return Is the node with the given history a chance node?
+     * Adds the reach probabilities of the opponent's information sets in the subtree below a pruned action, as the
+     * traversal would have done, see setPruning(...). Only the opponent acts in the subtree.
+     * @param store The store containing the information sets.
+     * @param node The root of the subtree.
+     * @param deal The deal.
+     * @param reach The opponent's reach probability of the node.
+     * @return The number of visited nodes.
      */
-    private boolean isChanceNode(String history) {
-        return history.equals("");
+    private int addReachBelow(InfoSetStore store, int node, int deal, float reach) {
+        if (tree.isTerminal(node)) {
+            return 0;
+        }
+
+        nodesVisited++;
+
+        int player = tree.player[node];
+        int infoSet = store.getIndex(tree.card(deal, player), tree.depth[node], tree.bits[node]);
+        int child = tree.firstChild[node];
+        int visited = 1;
+
+        store.addReachProb(infoSet, reach);
+
+        for (int a = 0; a < numActions; a++) {
+            visited += addReachBelow(store, child + a, deal, reach * store.getStrategy(infoSet, a));
+        }
+
+        return visited;
+    }
+
+    /**
+     * Traverses the tree once with the full-width algorithm, i.e. with chanceUtil(...) or publicTreeUtil(...).
+     * @param store The store containing the information sets.
+     * @return Player 1's expected payoff.
+     */
+    private float rootUtil(InfoSetStore store) {
+        return algorithm == Algorithm.PUBLIC_TREE ? publicTreeUtil(store) : chanceUtil(store);
+    }
+
+    /**
+     * Starts the public-tree traversal at the chance node. Each player holds every card with the same probability, so
+     * both ranges start out as all ones, and the probability of each deal is accounted for at the terminal nodes.
+     * @param store The store containing the information sets.
+     * @return Player 1's expected payoff.
+     */
+    private float publicTreeUtil(InfoSetStore store) {
+        // The chance node
+        nodesVisited++;
+
+        Arrays.fill(ranges[0][0], 1);
+        Arrays.fill(ranges[0][1], 1);
+
+        publicTreeCfr(store, GameTree.ROOT);
+
+        float expectedValue = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            expectedValue += rangeValues[0][0][card];
+        }
+
+        return expectedValue;
+    }
+
+    /**
+     * Traverses the betting tree once for all deals. The ranges of both players at the current node are read from
+     * ranges[depth], and the counterfactual values of every card of both players are written to rangeValues[depth],
+     * i.e. the payoffs summed over the opponent's cards, weighted by the opponent's reach probabilities and the
+     * probability of the deal. The loops over the cards work on contiguous arrays, so the JIT can vectorise them.
+     * @param store The store containing the information sets.
+     * @param node The index of the current node in the betting tree.
+     */
+    private void publicTreeCfr(InfoSetStore store, int node) {
+        nodesVisited++;
+
+        int depth = tree.depth[node];
+
+        if (tree.isTerminal(node)) {
+            terminalValues(node, 0, ranges[depth][1], rangeValues[depth][0]);
+            terminalValues(node, 1, ranges[depth][0], rangeValues[depth][1]);
+            return;
+        }
+
+        int actingPlayer = tree.player[node];
+        int opponent = 1 - actingPlayer;
+        // With alternating updates, the other player's information sets are only traversed to compute the values.
+        boolean update = updatePlayer == -1 || updatePlayer == actingPlayer;
+
+        int[] infoSets = rangeInfoSets[depth];
+        float[] range = ranges[depth][actingPlayer];
+        float[] values = rangeValues[depth][actingPlayer];
+        float[] opponentValues = rangeValues[depth][opponent];
+        float[] childRange = ranges[depth + 1][actingPlayer];
+        float[] childValues = rangeValues[depth + 1][actingPlayer];
+        float[] childOpponentValues = rangeValues[depth + 1][opponent];
+
+        for (int card = 0; card < numCards; card++) {
+            infoSets[card] = store.getIndex(card, depth, tree.bits[node]);
+
+            if (update) {
+                store.addReachProb(infoSets[card], range[card]);
+            }
+        }
+
+        Arrays.fill(values, 0);
+        Arrays.fill(opponentValues, 0);
+
+        int child = tree.firstChild[node];
+
+        for (int i = 0; i < numActions; i++) {
+            // The action doesn't reveal anything about the opponent's card, so their range stays the same.
+            System.arraycopy(ranges[depth][opponent], 0, ranges[depth + 1][opponent], 0, numCards);
+
+            for (int card = 0; card < numCards; card++) {
+                childRange[card] = range[card] * store.getStrategy(infoSets[card], i);
+            }
+
+            publicTreeCfr(store, child + i);
+
+            float[] actionValues = rangeActionValues[depth][i];
+
+            for (int card = 0; card < numCards; card++) {
+                actionValues[card] = childValues[card];
+                values[card] += store.getStrategy(infoSets[card], i) * childValues[card];
+                opponentValues[card] += childOpponentValues[card];
+            }
+        }
+
+        if (!update) {
+            return;
+        }
+
+        regretUpdates += numCards * numActions;
+
+        for (int card = 0; card < numCards; card++) {
+            for (int i = 0; i < numActions; i++) {
+                float regret = rangeActionValues[depth][i][card] - values[card];
+                store.addRegret(infoSets[card], i, rule.clipped ? Math.max(regret, 0) : regret);
+            }
+        }
+    }
+
+    /**
+     * Computes the counterfactual values of the given player's cards at a terminal node in time linear in the number
+     * of cards: Without a showdown every card wins or loses the same amount against all of the opponent's cards but
+     * itself, and with a showdown a card wins against the opponent's lower cards and loses against the higher ones,
+     * whose reach probabilities are summed up while going through the cards in ascending order.
+     * @param node A terminal node.
+     * @param player The player whose values are computed.
+     * @param opponentRange The opponent's reach probabilities of their cards.
+     * @param values The array into which the values are written.
+     */
+    private void terminalValues(int node, int player, float[] opponentRange, float[] values) {
+        int terminal = tree.terminal[node];
+        float probability = 1.0f / tree.numDeals;
+        float total = 0;
+
+        for (int card = 0; card < numCards; card++) {
+            total += opponentRange[card];
+        }
+
+        if (!tree.showdown[terminal]) {
+            float payoff = (tree.player[node] == player ? tree.stake[terminal] : -tree.stake[terminal]) * probability;
+
+            for (int card = 0; card < numCards; card++) {
+                values[card] = payoff * (total - opponentRange[card]);
+            }
+        } else {
+            float payoff = tree.stake[terminal] * probability;
+            float below = 0;
+
+            for (int card = 0; card < numCards; card++) {
+                float above = total - below - opponentRange[card];
+                values[card] = payoff * (below - above);
+                below += opponentRange[card];
+            }
+        }
+    }
+
+    /**
+     * Samples a deal at the chance node and traverses the tree below it with the sampling algorithm, updating the
+     * regrets of the given player.
+     * @param store The store containing the information sets.
+     * @param player The player whose regrets are updated (0 for player 1, 1 for player 2).
+     */
+    private void sample(InfoSetStore store, int player) {
+        // The chance node
+        nodesVisited++;
+
+        int deal = random.nextInt(tree.numDeals);
+
+        // The probability of the deal cancels out of the regrets, since both the counterfactual reach probability and
+        // the sampling probability contain it.
+        if (algorithm == Algorithm.OUTCOME_SAMPLING) {
+            outcomeSampling(store, GameTree.ROOT, deal, player, 1, 1, 1);
+        } else {
+            externalSampling(store, GameTree.ROOT, deal, player);
+        }
+    }
+
+    /**
+     * Traverses the tree with external sampling: all actions of the given player are visited, while a single action is
+     * sampled at the opponent's nodes. The sampled utilities are unbiased estimates of the counterfactual values, so the
+     * regrets are updated with them directly. The average strategy is updated at the opponent's nodes, which are reached
+     * with a probability proportional to the opponent's own reach probability.
+     * @param store The store containing the information sets.
+     * @param node The index of the current node in the betting tree.
+     * @param deal The index of the deal.
+     * @param player The player whose regrets are updated (0 for player 1, 1 for player 2).
+     * @return The sampled utility of the node for the given player.
+     */
+    private float externalSampling(InfoSetStore store, int node, int deal, int player) {
+        nodesVisited++;
+
+        if (tree.isTerminal(node)) {
+            return tree.utility(node, deal, player);
+        }
+
+        int actingPlayer = tree.player[node];
+        int infoSet = store.getIndex(tree.card(deal, actingPlayer), tree.depth[node], tree.bits[node]);
+        int child = tree.firstChild[node];
+
+        store.calcStrategy(infoSet);
+
+        if (actingPlayer != player) {
+            store.addToAverage(infoSet, 1);
+
+            int action = sampleAction(store, infoSet, 0);
+            return externalSampling(store, child + action, deal, player);
+        }
+
+        float[] utils = actionUtils[tree.depth[node]];
+        float util = 0;
+
+        for (int i = 0; i < numActions; i++) {
+            utils[i] = externalSampling(store, child + i, deal, player);
+            util += store.getStrategy(infoSet, i) * utils[i];
+        }
+
+        for (int i = 0; i < numActions; i++) {
+            store.addRegret(infoSet, i, utils[i] - util);
+        }
+
+        regretUpdates += numActions;
+
+        return util;
+    }
+
+    /**
+     * Traverses a single path of the tree with outcome sampling as in Lanctot et al. (2009). At the given player's nodes
+     * the action is sampled with exploration, at the opponent's nodes according to the opponent's strategy. The
+     * utility at the terminal node is divided by the probability of having sampled it, which makes the regret
+     * estimates unbiased. After returning, the field tail holds the probability of reaching the terminal node from the
+     * current node.
+     * @param store The store containing the information sets.
+     * @param node The index of the current node in the betting tree.
+     * @param deal The index of the deal.
+     * @param player The player whose regrets are updated (0 for player 1, 1 for player 2).
+     * @param prPlayer The given player's contribution to the reach probability of the current node.
+     * @param prOpponent The opponent's contribution to the reach probability of the current node.
+     * @param prSample The probability of having sampled the path to the current node.
+     * @return The sampled utility of the terminal node for the given player, divided by the probability of sampling it.
+     */
+    private float outcomeSampling(InfoSetStore store, int node, int deal, int player,
+                                  float prPlayer, float prOpponent, float prSample) {
+        nodesVisited++;
+
+        if (tree.isTerminal(node)) {
+            tail = 1;
+            return tree.utility(node, deal, player) / prSample;
+        }
+
+        int actingPlayer = tree.player[node];
+        int infoSet = store.getIndex(tree.card(deal, actingPlayer), tree.depth[node], tree.bits[node]);
+        int child = tree.firstChild[node];
+
+        store.calcStrategy(infoSet);
+
+        if (actingPlayer != player) {
+            int action = sampleAction(store, infoSet, 0);
+            float strategy = store.getStrategy(infoSet, action);
+
+            float util = outcomeSampling(store, child + action, deal, player,
+                    prPlayer, prOpponent * strategy, prSample * strategy);
+
+            // Stochastically weighted averaging: the opponent's reach probability divided by the sampling probability
+            // is an unbiased estimate of the weight of this information set in the average strategy.
+            store.addToAverage(infoSet, prOpponent / prSample);
+
+            tail *= strategy;
+            return util;
+        }
+
+        int action = sampleAction(store, infoSet, exploration);
+        float strategy = store.getStrategy(infoSet, action);
+        float sampleProb = exploration / numActions + (1 - exploration) * strategy;
+
+        float util = outcomeSampling(store, child + action, deal, player,
+                prPlayer * strategy, prOpponent, prSample * sampleProb);
+
+        // The utility is already divided by the sampling probability, so this is the counterfactual value of reaching
+        // the terminal node from this information set.
+        float weightedUtil = util * prOpponent;
+        regretUpdates += numActions;
+
+        for (int i = 0; i < numActions; i++) {
+            if (i == action) {
+                store.addRegret(infoSet, i, weightedUtil * tail * (1 - strategy));
+            } else {
+                store.addRegret(infoSet, i, -weightedUtil * tail * strategy);
+            }
+        }
+
+        tail *= strategy;
+        return util;
+    }
+
+    /**
+     * Samples an action according to the current strategy of the information set, mixed with a uniform distribution.
+     * @param store The store containing the information sets.
+     * @param infoSet Index of the information set.
+     * @param exploration The weight of the uniform distribution.
+     * @return The sampled action.
+     */
+    private int sampleAction(InfoSetStore store, int infoSet, float exploration) {
+        float r = random.nextFloat();
+        float cumulative = 0;
+
+        for (int i = 0; i < numActions - 1; i++) {
+            cumulative += exploration / numActions + (1 - exploration) * store.getStrategy(infoSet, i);
+
+            if (r < cumulative) {
+                return i;
+            }
+        }
+
+        return numActions - 1;
+    }
+
+    /**
+     * @param depth The number of actions in the terminal history.
+     * @param bits The actions in the terminal history.
+     * @param card1 Player 1's card.
+     * @param card2 Player 2's card.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @return The payoff of the terminal node for the given player.
+     */
+    static float utility(int depth, int bits, int card1, int card2, int player) {
+        // terminalUtil(...) returns the payoff of the player who would act next.
+        int payoff = terminalUtil(depth, bits, card1, card2);
+        return depth % 2 == player ? payoff : -payoff;
     }
 
     /**
      * This method is called when the traversal starts at the chance nodes. It starts the traversal of all information
      * sets by calling the cfr function for each decision node on the level below it.
-     * @param iMap The map of all the information sets
+     * @param store The store of all the information sets
      * @return The average payoff from choosing all six decision nodes.
      */
-    private float chanceUtil(Map<String, InformationSet> iMap) {
+    private float chanceUtil(InfoSetStore store) {
+        // The chance node
+        nodesVisited++;
+
         float expectedValue = 0;
-        int nPossibilities = 6;
-        for(int i = 0; i < numCards; i++) {
-            for (int j = 0; j < numCards; j++) {
-                if (i != j) {
-                    expectedValue += cfr(iMap, "rr", i, j, 1, 1, 1.0f/nPossibilities);
-                }
-            }
+        int nPossibilities = tree.numDeals;
+        for (int deal = 0; deal < nPossibilities; deal++) {
+            expectedValue += cfr(store, GameTree.ROOT, deal, 1, 1, 1.0f/nPossibilities);
         }
         return expectedValue / nPossibilities;
     }
 
+    /**
+     * Same as isTerminal(String), but for a history encoded as depth and bit pattern. The terminal histories are
+     * "rrcc" (2, 0b00), "rrbc" (2, 0b01), "rrbb" (2, 0b11), "rrcbc" (3, 0b010) and "rrcbb" (3, 0b110).
+     * @param depth The number of actions in the history.
+     * @param bits The actions in the history.
+     * @return True if the given history is a terminal node.
+     */
+    public static boolean isTerminal(int depth, int bits) {
+        return depth == 3 || (depth == 2 && bits != 0b10);
+    }
+
+    /**
+     * Same as terminalUtil(String, int, int), but for a history encoded as depth and bit pattern.
+     * @param depth The number of actions in the history.
+     * @param bits The actions in the history.
+     * @param card1 Player 1's card
+     * @param card2 Player 2's card
+     * @return Payoff
+     */
+    public static int terminalUtil(int depth, int bits, int card1, int card2) {
+        int cardPlayer = depth % 2 == 0 ? card1 : card2;
+        int cardOpponent = depth % 2 == 0 ? card2 : card1;
+
+        // one player wins, because they bet and the opponent checked
+        if ((depth == 3 && bits == 0b010) || (depth == 2 && bits == 0b01)) {
+            return 1;
+        // showdown where none have bet
+        } else if (depth == 2 && bits == 0b00) {
+            return cardPlayer > cardOpponent ? 1 : -1;
+        }
+
+        // showdown where both have bet
+        return cardPlayer > cardOpponent ? 2 : -2;
+    }
+
     /**
      * Checks if the given history is a terminal node. This is done by hard coding the history describing each terminal node.
      * @param history History whose being a terminal node is decided.
@@ -218,40 +1261,83 @@ public class KuhnPokerCFR {
     }
 
     /**
-     * @param card Integer in {0, 1, 2} describing one of three cards.
-     * @return The String representing the letter representing the card.
+     * Labels the cards of a deck of the given size, from the lowest to the highest card: Decks of up to 12 cards use the
+     * ranks up to the king, so that the original deck is J, Q, K, and a deck of 13 cards adds the ace. A deck of 52
+     * cards is a standard deck ordered by rank and then by suit (2c, 2d, 2h, 2s, 3c, ..., As). The cards of any other
+     * deck are numbered from 1.
+     * @param card The card, in [0, numCards).
+     * @param numCards The number of cards in the deck.
+     * @return The label of the card.
      */
-    public String cardString(int card) {
-        if (card == 0) {
-            return "J";
-        } else if (card == 1) {
-            return "Q";
-        } else if (card == 2) {
-            return "K";
-        } else {
-            System.out.println("Error: Illegal card number");
-            return "";
+    public static String cardString(int card, int numCards) {
+        if (card < 0 || card >= numCards) {
+            throw new IllegalArgumentException("Illegal card number " + card + " for a deck of " + numCards + " cards.");
         }
+
+        if (numCards < RANKS.length()) {
+            return String.valueOf(RANKS.charAt(RANKS.length() - 1 - numCards + card));
+        } else if (numCards == RANKS.length()) {
+            return String.valueOf(RANKS.charAt(card));
+        } else if (numCards == RANKS.length() * SUITS.length()) {
+            return "" + RANKS.charAt(card / SUITS.length()) + SUITS.charAt(card % SUITS.length());
+        }
+
+        return Integer.toString(card + 1);
+    }
+
+    /**
+     * Computes the slot of a history within a binary tree of betting sequences: The betting sequence of the given depth
+     * is found at slot 2^depth - 1 + bits. Together with the card, the slot uniquely describes an information set.
+     * @param depth The number of actions in the history.
+     * @param bits The actions in the history, with 'c' = 0 and 'b' = 1 and the first action being the lowest bit.
+     * @return The slot of the history, which lies in [0, numHistories).
+     */
+    public static int historySlot(int depth, int bits) {
+        return (1 << depth) - 1 + bits;
+    }
+
+    /**
+     * @param slot The slot of a history, see historySlot(...).
+     * @return The number of actions in the history.
+     */
+    public static int slotDepth(int slot) {
+        return 31 - Integer.numberOfLeadingZeros(slot + 1);
     }
 
     /**
-     *
-     * @param infoMap The map with all the information sets as values and the strings representing those information
-     *                sets as keys.
-     * @param card Card which, together with the history, describes the information sets.
-     * @param history History which, together with a given card, describes an information set.
-     * @return The information set object which is described by the given history and card.
+     * @param slot The slot of a history, see historySlot(...).
+     * @return The actions in the history.
      */
-    InformationSet getInfoSet(Map<String, InformationSet> infoMap, int card, String history) {
-        String key = cardString(card) + " " + history;
+    public static int slotBits(int slot) {
+        return slot + 1 - (1 << slotDepth(slot));
+    }
+
+    /**
+     * Inverse of historySlot(...).
+     * @param slot The slot of a history.
+     * @return The history, e.g. "rrcb".
+     */
+    public static String historyString(int slot) {
+        int depth = slotDepth(slot);
+        int bits = slotBits(slot);
+
+        StringBuilder history = new StringBuilder("rr");
 
-        if (!infoMap.containsKey(key)) {
-            InformationSet infoSet = new InformationSet(key);
-            infoMap.put(key, infoSet);
-            return infoSet;
+        for (int i = 0; i < depth; i++) {
+            history.append((bits >> i & 1) == 0 ? 'c' : 'b');
         }
 
-        return infoMap.get(key);
+        return history.toString();
+    }
+
+    /**
+     * Builds the map view of the information sets computed by the last call to train(...). With an ArrayInfoSetStore
+     * the map is built on every call, so it should only be used for displaying or playing with the strategy.
+     * @return The map with the keys describing the information sets (e.g. "K rrc") as keys and the information sets as
+     *         values.
+     */
+    public Map<String, InformationSet> getInfoSetMap() {
+        return store.toMap();
     }
 
     /**
@@ -263,30 +1349,35 @@ public class KuhnPokerCFR {
         System.out.println("######################################\n");
 
         System.out.println(nodesVisited + " nodes visited.");
+        System.out.println("Betting tree: " + tree);
+        System.out.printf("Exploitability: %.5f\n", exploitability());
 
         System.out.println("The following is the approximated Nash equilibrium for Kuhn Poker after N = " + nIterations + " iterations.\n" +
                 "The rows each represent an information set, described by the dealt card with the history preceding the information set,\n" +
                 "while the columns represent one of the two possible actions, bet and check. The entries denote the probability of\n" +
                 "playing the given action at the given information set.\n");
 
+        Map<String, InformationSet> iMap = getInfoSetMap();
+
         System.out.println("Player 1 strategy:");
         System.out.println("\n         Check  Bet");
 
         for (InformationSet is : iMap.values()) {
-            // the information set involves a choice by player 1 if the length of the string is
+            // the information set involves a choice by player 1 if the length of the history is
             // divisible by 2
 
             float[] s = is.getAverageStrategy();
+            String history = is.key.substring(is.key.indexOf(' ') + 1);
 
-            if (is.key.length() % 2 == 0) {
+            if (history.length() % 2 == 0) {
 
                 System.out.print(is.key);
 
                 // This block simply manages the formatting
-                if (is.key.length() == 4) {
+                if (history.length() == 2) {
                     System.out.printf(":   [%1.2f", s[0]);
                     System.out.print(String.format(", %1.2f]", is.strategy[1]) + "\n");
-                } else if (is.key.length() == 6) {
+                } else if (history.length() == 4) {
                     System.out.printf(": [%1.2f", s[0]);
                     System.out.print(String.format(", %1.2f]", is.strategy[1]) + "\n");
                 } else {
@@ -300,10 +1391,11 @@ public class KuhnPokerCFR {
         for (InformationSet is : iMap.values()) {
 
             float[] s = is.getAverageStrategy();
+            String history = is.key.substring(is.key.indexOf(' ') + 1);
 
-            // the information set involves a choice by player 2 if the length of the string is
-            // divisible by 2
-            if (is.key.length() % 2 != 0) {
+            // the information set involves a choice by player 2 if the length of the history is
+            // not divisible by 2
+            if (history.length() % 2 != 0) {
                 System.out.print(is.key);
                 System.out.printf(":  [%1.2f", s[0]);
                 System.out.print(String.format(", %1.2f]", s[1]) + "\n");
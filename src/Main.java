@@ -1,10 +1,48 @@
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Main {
-
+    static final String CHECKPOINT_FILE = "kuhn_poker.ckpt";
+
+    // The number of training iterations of the menu options.
+    static final int RPS_ITERATIONS = 100000;
+    static final int KUHN_ITERATIONS = 10000;
+    static final int SAMPLING_ITERATIONS = 100000;
+    static final int COMPARISON_RUNS = 1000;
+    static final int COMPARISON_ITERATIONS = 1000;
+    static final int PLAY_ROUNDS = 10000;
+
+    static final Scanner sc = new Scanner(System.in);
+
+    /**
+     * Shows the menu, or runs a sweep of experiments without a terminal if arguments are given, see ExperimentRunner:
+     * <pre>
+     * java -jar run.jar --sweep sweep.txt --out results.csv
+     * </pre>
+     * With --coordinator or --worker as the first argument, the program trains as a process of sharded training
+     * instead, see ShardCoordinator and ShardWorker. --serve serves a trained model over HTTP (see StrategyServer), and
+     * --load-test measures the latency and throughput of such a server (see StrategyLoadTest).
+     */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+
+            if (args[0].equals("--coordinator")) {
+                ShardCoordinator.main(rest);
+            } else if (args[0].equals("--worker")) {
+                ShardWorker.main(rest);
+            } else if (args[0].equals("--serve")) {
+                StrategyServer.main(rest);
+            } else if (args[0].equals("--load-test")) {
+                StrategyLoadTest.main(rest);
+            } else {
+                ExperimentRunner.main(args);
+            }
 
+            return;
+        }
 
         System.out.println("""
                 Welcome to my programming project on poker.
@@ -23,81 +61,119 @@ public class Main {
                     [5] Play Kuhn poker against an AI playing with the computed optimal strategy.
                     \s""");
 
-            Scanner sc = new Scanner(System.in);
-
-            int input = sc.nextInt();
-
-            executeAction(input);
+            executeAction((int) readNumber(0, 5));
 
             System.out.println("Anthing else?");
         }
 
     }
 
-    private static void executeAction (int input) throws IOException {
-        Scanner sc = new Scanner(System.in);
+    /**
+     * Reads a number from the console, asking again until one within the given bounds is typed in.
+     * @param min The smallest valid number.
+     * @param max The largest valid number.
+     * @return The number.
+     */
+    private static long readNumber(long min, long max) {
+        while (true) {
+            if (sc.hasNextLong()) {
+                long input = sc.nextLong();
+
+                if (input >= min && input <= max) {
+                    return input;
+                }
+            } else if (sc.hasNext()) {
+                sc.next();
+            } else {
+                // The input has ended, e.g. because it was piped from a file.
+                System.exit(0);
+            }
 
-        if (!(input >= 0 && input <= 5)) {
-            executeAction(input);
+            System.out.print("Please type in a number between " + min + " and " + max + ": ");
         }
+    }
 
+    private static void executeAction (int input) throws IOException {
         if (input == 0) {
             RockPaperScissorsCFR rps = new RockPaperScissorsCFR();
 
-            rps.train(100000);
+            rps.train(RPS_ITERATIONS);
 
             rps.printStrategies();
         } else if (input == 1) {
-            KuhnPokerCFR kp = new KuhnPokerCFR(false);
+            KuhnPokerCFR kp = new KuhnPokerCFR(false, true);
 
-            kp.train(10000);
+            kp.train(KUHN_ITERATIONS);
 
             kp.printStrategies();
         } else if (input == 2) {
-            KuhnPokerCFR kp = new KuhnPokerCFR(true);
+            KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.EXTERNAL_SAMPLING, true);
 
-            kp.train(2000);
+            kp.train(SAMPLING_ITERATIONS);
 
             kp.printStrategies();
         } else if (input == 3) {
             long cfrStartTime = System.currentTimeMillis();
-            for (int i = 0; i < 1000; i++) {
-                KuhnPokerCFR kp = new KuhnPokerCFR(false);
+            for (int i = 0; i < COMPARISON_RUNS; i++) {
+                KuhnPokerCFR kp = new KuhnPokerCFR(false, true);
 
-                kp.train(1000);
+                kp.train(COMPARISON_ITERATIONS);
             }
             long cfrEndTime = System.currentTimeMillis();
 
             long mccfrStartTime = System.currentTimeMillis();
-            for (int i = 0; i < 1000; i++) {
-                KuhnPokerCFR mckp = new KuhnPokerCFR(true);
+            for (int i = 0; i < COMPARISON_RUNS; i++) {
+                KuhnPokerCFR mckp = new KuhnPokerCFR(true, true);
 
-                mckp.train(1000);
+                mckp.train(COMPARISON_ITERATIONS);
             }
             long mccfrEndTime = System.currentTimeMillis();
 
-            System.out.println("CFR average time until convergence:   " + ((cfrEndTime - cfrStartTime) / 100) + "ms");
+            System.out.println("CFR average time until convergence:   " + ((cfrEndTime - cfrStartTime) / (double) COMPARISON_RUNS) + "ms");
 
-            System.out.println("MCCFR average time until convergence: " + ((mccfrEndTime - mccfrStartTime) / 100) + "ms");
+            System.out.println("MCCFR average time until convergence: " + ((mccfrEndTime - mccfrStartTime) / (double) COMPARISON_RUNS) + "ms");
         } else if (input == 4) {
             System.out.print("How many rounds should the two AIs play against each other? ");
 
-            int rounds = sc.nextInt();
+            // The confidence interval needs at least two rounds.
+            long rounds = readNumber(2, Long.MAX_VALUE);
 
-            KuhnPokerCFR kp = new KuhnPokerCFR(false);
-            kp.train(10000);
+            KuhnPokerCFR kp = trainedKuhnPoker();
 
-            PlayKuhnPoker pkp = new PlayKuhnPoker(kp.iMap, false);
+            Evaluator evaluator = new Evaluator(Evaluator.strategyTable(kp.store, kp.numCards), Evaluator.uniformTable(kp.numCards));
 
-            pkp.play(rounds);
+            Evaluator.Result result = evaluator.evaluate(rounds, System.nanoTime());
+
+            System.out.println("Payoff of the trained AI against the untrained AI: " + result + "\n");
         } else if (input == 5) {
-            KuhnPokerCFR kp = new KuhnPokerCFR(false);
-            kp.train(10000);
+            KuhnPokerCFR kp = trainedKuhnPoker();
 
-            PlayKuhnPoker pkp = new PlayKuhnPoker(kp.iMap, true);
+            PlayKuhnPoker pkp = new PlayKuhnPoker(kp.getInfoSetMap(), true);
 
-            pkp.play(10000);
+            pkp.play(PLAY_ROUNDS);
         }
     }
-}
 
+    /**
+     * Loads the strategy for Kuhn poker from the checkpoint file, so that it only has to be trained once. If there is
+     * no checkpoint yet, the strategy is trained and saved.
+     * @return The trained KuhnPokerCFR.
+     */
+    private static KuhnPokerCFR trainedKuhnPoker() throws IOException {
+        KuhnPokerCFR kp = new KuhnPokerCFR(false, true);
+        Checkpoint checkpoint = new Checkpoint(Path.of(CHECKPOINT_FILE));
+
+        if (checkpoint.exists()) {
+            try {
+                kp.load(checkpoint);
+                return kp;
+            } catch (IOException e) {
+                System.out.println("The checkpoint " + CHECKPOINT_FILE + " can't be loaded (" + e.getMessage() + "), so the strategy is trained again.");
+            }
+        }
+
+        kp.train(KUHN_ITERATIONS, checkpoint, KUHN_ITERATIONS);
+
+        return kp;
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Information set store which keeps one InformationSet object per information set and looks them up by their String
+ * key. This is the original representation used by KuhnPokerCFR.
+ * @author Max Jappert
+ */
+public class MapInfoSetStore implements InfoSetStore {
+    final int numCards;
+    Map<String, Integer> indices = new HashMap<>();
+    List<InformationSet> sets = new ArrayList<>();
+
+    /**
+     * A store for the original deck of three cards.
+     */
+    public MapInfoSetStore() {
+        this(KuhnPokerCFR.DEFAULT_NUM_CARDS);
+    }
+
+    /**
+     * @param numCards The number of cards in the deck, which determines the labels of the cards in the keys.
+     */
+    public MapInfoSetStore(int numCards) {
+        this.numCards = numCards;
+    }
+
+    @Override
+    public int getIndex(int card, int depth, int bits) {
+        String key = KuhnPokerCFR.cardString(card, numCards) + " " + KuhnPokerCFR.historyString(KuhnPokerCFR.historySlot(depth, bits));
+
+        Integer index = indices.get(key);
+
+        if (index == null) {
+            index = sets.size();
+            indices.put(key, index);
+            sets.add(new InformationSet(key));
+        }
+
+        return index;
+    }
+
+    @Override
+    public int findIndex(int card, int depth, int bits) {
+        String key = KuhnPokerCFR.cardString(card, numCards) + " " + KuhnPokerCFR.historyString(KuhnPokerCFR.historySlot(depth, bits));
+
+        Integer index = indices.get(key);
+
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int size() {
+        return sets.size();
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return sets.get(index).strategy[action];
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return sets.get(index).regretSum[action];
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        sets.get(index).regretSum[action] = value;
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return sets.get(index).strategySum[action];
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        sets.get(index).strategySum[action] = value;
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return sets.get(index).reachProbSum;
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        sets.get(index).reachProbSum = value;
+    }
+
+    @Override
+    public float getAverageStrategy(int index, int action) {
+        InformationSet is = sets.get(index);
+
+        if (is.reachProbSum == 0) {
+            return 1.0f / KuhnPokerCFR.numActions;
+        }
+
+        return is.getAverageStrategy()[action];
+    }
+
+    @Override
+    public void addReachProb(int index, float reachProb) {
+        sets.get(index).reachProb += reachProb;
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        sets.get(index).regretSum[action] += regret;
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        InformationSet is = sets.get(index);
+
+        is.strategySum[0] += weight * is.strategy[0];
+        is.strategySum[1] += weight * is.strategy[1];
+        is.reachProbSum += weight;
+    }
+
+    @Override
+    public void calcStrategy(int index) {
+        sets.get(index).calcStrategy();
+    }
+
+    @Override
+    public float getProbability(int index, int action, float padding, float epsilon) {
+        return sets.get(index).getProbability(action, padding, epsilon);
+    }
+
+    @Override
+    public int player(int index) {
+        // The key consists of the card, a space and the history, which starts with "rr". Card labels can be longer than
+        // a character (e.g. "10"), so the depth is counted from the space.
+        String key = sets.get(index).key;
+        return (key.length() - key.indexOf(' ') - 3) % 2;
+    }
+
+    @Override
+    public void nextStrategies(UpdateRule rule, int iteration, int player) {
+        for (int index = 0; index < sets.size(); index++) {
+            if (player == -1 || player(index) == player) {
+                sets.get(index).nextStrategy(rule, iteration);
+            }
+        }
+    }
+
+    @Override
+    public void resetStrategySums() {
+        for (InformationSet is : sets) {
+            is.strategySum[0] = 0;
+            is.strategySum[1] = 0;
+        }
+    }
+
+    @Override
+    public Map<String, InformationSet> toMap() {
+        Map<String, InformationSet> iMap = new HashMap<>();
+
+        for (InformationSet is : sets) {
+            iMap.put(is.key, is);
+        }
+
+        return iMap;
+    }
+}
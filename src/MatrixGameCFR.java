@@ -0,0 +1,393 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Regret matching for two-player zero-sum matrix games of any size, the generalisation of RockPaperScissorsCFR. Player
+ * 1 chooses a row and player 2 a column of the payoff matrix, which holds player 1's payoffs; player 2 receives the
+ * negated payoffs.
+ * <p>
+ * By default every iteration is full-width: the expected payoff of every action against the opponent's current
+ * strategy is computed exactly, which for player 1 is the matrix-vector product A y and for player 2 the product
+ * -A^T x. Both products are computed as sums of the matrix's columns (or rows) weighted by the opponent's probabilities,
+ * so the inner loops are element-wise operations on contiguous arrays, which the JIT compiles to SIMD instructions.
+ * Actions the opponent plays with probability 0, which regret matching+ produces for most actions of large games, are
+ * skipped. Alternatively, one action per player can be sampled per iteration like in RockPaperScissorsCFR.
+ * @author Max Jappert
+ */
+public class MatrixGameCFR {
+
+    /**
+     * The ways of computing the regrets in an iteration.
+     */
+    public enum Mode {
+        /** The regrets are computed from the expected payoffs against the opponent's strategy. */
+        FULL_WIDTH,
+        /** The regrets are computed from a single sampled action of each player, like in RockPaperScissorsCFR. */
+        SAMPLED
+    }
+
+    final int rows;
+    final int cols;
+    // Player 1's payoffs, row by row, and the same matrix column by column.
+    final float[] payoffs;
+    final float[] transposed;
+
+    final Mode mode;
+    final UpdateRule rule;
+
+    // Index 0 holds the values of player 1 (over the rows), index 1 those of player 2 (over the columns).
+    float[][] regretSum = new float[2][];
+    float[][] strategySum = new float[2][];
+    float[][] strategy = new float[2][];
+    // The expected payoff of each action against the opponent's current strategy.
+    float[][] actionUtils = new float[2][];
+
+    int nIterations = 0;
+
+    // Only used for sampling.
+    Random random = new Random();
+
+    /**
+     * Same as MatrixGameCFR(payoffs, Mode.FULL_WIDTH, UpdateRule.cfrPlus()).
+     */
+    public MatrixGameCFR(float[][] payoffs) {
+        this(payoffs, Mode.FULL_WIDTH, UpdateRule.cfrPlus());
+    }
+
+    /**
+     * @param payoffs Player 1's payoffs, payoffs[row][column]. Every row must have the same length.
+     * @param mode Should the regrets be computed full-width or from sampled actions?
+     * @param rule The rule for updating the regrets and strategy sums after each iteration. UpdateRule.cfrPlus()
+     *             (regret matching+ with alternating updates and linear averaging) converges fastest.
+     */
+    public MatrixGameCFR(float[][] payoffs, Mode mode, UpdateRule rule) {
+        this.rows = payoffs.length;
+        this.cols = payoffs[0].length;
+        this.payoffs = new float[rows * cols];
+        this.transposed = new float[rows * cols];
+        this.mode = mode;
+        this.rule = rule;
+
+        for (int i = 0; i < rows; i++) {
+            if (payoffs[i].length != cols) {
+                throw new IllegalArgumentException("Row " + i + " has " + payoffs[i].length + " entries instead of "
+                        + cols + ".");
+            }
+
+            for (int j = 0; j < cols; j++) {
+                this.payoffs[i * cols + j] = payoffs[i][j];
+                this.transposed[j * rows + i] = payoffs[i][j];
+            }
+        }
+
+        int[] numActions = {rows, cols};
+
+        for (int player = 0; player < 2; player++) {
+            regretSum[player] = new float[numActions[player]];
+            strategySum[player] = new float[numActions[player]];
+            strategy[player] = new float[numActions[player]];
+            actionUtils[player] = new float[numActions[player]];
+
+            Arrays.fill(strategy[player], 1.0f / numActions[player]);
+        }
+    }
+
+    /**
+     * Colonel Blotto: Each player distributes the given number of soldiers over the given number of battlefields, and
+     * wins a battlefield by placing more soldiers on it than the opponent. Player 1's payoff is the number of
+     * battlefields won minus the number lost. Every distribution is a pure strategy, so there are
+     * (soldiers + fields - 1 choose fields - 1) of them, e.g. 1001 for 10 soldiers and 5 battlefields.
+     * @param soldiers The number of soldiers of each player.
+     * @param fields The number of battlefields.
+     * @return The payoff matrix.
+     */
+    public static float[][] colonelBlotto(int soldiers, int fields) {
+        int[][] distributions = distributions(soldiers, fields);
+        float[][] payoffs = new float[distributions.length][distributions.length];
+
+        for (int i = 0; i < distributions.length; i++) {
+            for (int j = 0; j < distributions.length; j++) {
+                for (int f = 0; f < fields; f++) {
+                    payoffs[i][j] += Integer.signum(distributions[i][f] - distributions[j][f]);
+                }
+            }
+        }
+
+        return payoffs;
+    }
+
+    /**
+     * @return Every way of distributing the soldiers over the battlefields.
+     */
+    private static int[][] distributions(int soldiers, int fields) {
+        if (fields == 1) {
+            return new int[][] {{soldiers}};
+        }
+
+        int count = 0;
+
+        for (int first = 0; first <= soldiers; first++) {
+            count += distributions(soldiers - first, fields - 1).length;
+        }
+
+        int[][] result = new int[count][];
+        int k = 0;
+
+        for (int first = 0; first <= soldiers; first++) {
+            for (int[] rest : distributions(soldiers - first, fields - 1)) {
+                result[k] = new int[fields];
+                result[k][0] = first;
+                System.arraycopy(rest, 0, result[k], 1, fields - 1);
+                k++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the given number of iterations, continuing from the previous call.
+     * @param iterations The number of iterations.
+     */
+    public void train(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            nIterations++;
+
+            if (mode == Mode.SAMPLED) {
+                sampledIteration();
+            } else if (rule.alternating) {
+                // Player 2's regrets are computed with the strategy player 1 has just been updated to.
+                for (int player = 0; player < 2; player++) {
+                    computeActionUtils(player);
+                    update(player, -1);
+                }
+            } else {
+                computeActionUtils(0);
+                computeActionUtils(1);
+                update(0, -1);
+                update(1, -1);
+            }
+        }
+    }
+
+    /**
+     * Trains until the exploitability of the average strategies drops below the given target or the time budget runs
+     * out, whichever happens first.
+     * @param targetExploitability The exploitability at which training stops.
+     * @param timeBudgetMillis The maximum training time in milliseconds.
+     * @param checkInterval The number of iterations between two computations of the exploitability.
+     * @return The exploitability of the average strategies when training stopped.
+     */
+    public float trainUntil(float targetExploitability, long timeBudgetMillis, int checkInterval) {
+        long deadline = System.currentTimeMillis() + timeBudgetMillis;
+        float exploitability;
+
+        do {
+            train(checkInterval);
+            exploitability = exploitability();
+        } while (exploitability > targetExploitability && System.currentTimeMillis() < deadline);
+
+        return exploitability;
+    }
+
+    /**
+     * Computes the expected payoff of each of the player's actions against the opponent's current strategy.
+     * @param player The player (0 for player 1, 1 for player 2).
+     */
+    private void computeActionUtils(int player) {
+        float[] opponentStrategy = strategy[1 - player];
+        expectedPayoffs(player, opponentStrategy, actionUtils[player]);
+    }
+
+    /**
+     * Computes the payoff of each of the player's actions against the given mixed strategy of the opponent.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @param opponentStrategy The opponent's strategy.
+     * @param utils The array into which the payoffs are written.
+     */
+    private void expectedPayoffs(int player, float[] opponentStrategy, float[] utils) {
+        // Player 1's payoffs are A y, the sum of A's columns weighted by y, which are the rows of the transposed
+        // matrix. Player 2's payoffs are -A^T x, the negated sum of A's rows weighted by x.
+        float[] matrix = player == 0 ? transposed : payoffs;
+        float sign = player == 0 ? 1 : -1;
+        int n = utils.length;
+
+        Arrays.fill(utils, 0);
+
+        for (int k = 0; k < opponentStrategy.length; k++) {
+            float weight = sign * opponentStrategy[k];
+
+            if (weight == 0) {
+                continue;
+            }
+
+            int offset = k * n;
+
+            for (int a = 0; a < n; a++) {
+                utils[a] += weight * matrix[offset + a];
+            }
+        }
+    }
+
+    /**
+     * Adds the regrets of the current iteration to the player's cumulative regrets, adds the current strategy to the
+     * strategy sum and computes the strategy for the next iteration.
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @param sampledAction The player's sampled action, or -1 if the regrets are relative to the expected payoff.
+     */
+    private void update(int player, int sampledAction) {
+        float strategySumFactor = rule.strategySumFactor(nIterations);
+        float positiveFactor = rule.positiveRegretFactor(nIterations);
+        float negativeFactor = rule.negativeRegretFactor(nIterations);
+
+        float[] utils = actionUtils[player];
+        float[] regrets = regretSum[player];
+        float[] sigma = strategy[player];
+        float[] sum = strategySum[player];
+
+        float util = 0;
+
+        if (sampledAction != -1) {
+            util = utils[sampledAction];
+        } else {
+            for (int a = 0; a < sigma.length; a++) {
+                util += sigma[a] * utils[a];
+            }
+        }
+
+        for (int a = 0; a < sigma.length; a++) {
+            float regret = utils[a] - util;
+            regrets[a] += rule.clipped ? Math.max(regret, 0) : regret;
+            regrets[a] *= regrets[a] > 0 ? positiveFactor : negativeFactor;
+            sum[a] = sum[a] * strategySumFactor + sigma[a];
+        }
+
+        calcStrategy(player);
+    }
+
+    /**
+     * Samples one action of each player according to their current strategies and updates the regrets with the
+     * payoffs of every action against the opponent's sampled action, like RockPaperScissorsCFR.train(...).
+     */
+    private void sampledIteration() {
+        int row = sampleAction(strategy[0]);
+        int col = sampleAction(strategy[1]);
+
+        for (int a = 0; a < rows; a++) {
+            actionUtils[0][a] = payoffs[a * cols + col];
+        }
+
+        for (int a = 0; a < cols; a++) {
+            actionUtils[1][a] = -payoffs[row * cols + a];
+        }
+
+        // The regrets are relative to the payoff of the sampled action instead of the expected payoff.
+        update(0, row);
+        update(1, col);
+    }
+
+    /**
+     * Computes the player's strategy by dividing the positive cumulative regret of each action by the total positive
+     * cumulative regret, or the uniform strategy if there is none.
+     * @param player The player (0 for player 1, 1 for player 2).
+     */
+    private void calcStrategy(int player) {
+        float[] regrets = regretSum[player];
+        float[] sigma = strategy[player];
+        float normalizingValue = 0;
+
+        for (float regret : regrets) {
+            normalizingValue += Math.max(regret, 0);
+        }
+
+        for (int a = 0; a < sigma.length; a++) {
+            if (normalizingValue > 0) {
+                sigma[a] = Math.max(regrets[a], 0) / normalizingValue;
+            } else {
+                sigma[a] = 1.0f / sigma.length;
+            }
+        }
+    }
+
+    /**
+     * @param p A probability distribution over the actions.
+     * @return An action drawn from the distribution.
+     */
+    private int sampleAction(float[] p) {
+        float r = random.nextFloat();
+        float cumulative = 0;
+
+        for (int a = 0; a < p.length - 1; a++) {
+            cumulative += p[a];
+
+            if (r < cumulative) {
+                return a;
+            }
+        }
+
+        return p.length - 1;
+    }
+
+    /**
+     * @param player The player (0 for player 1, 1 for player 2).
+     * @return The player's average strategy, which approximates a Nash equilibrium strategy.
+     */
+    public float[] getAverageStrategy(int player) {
+        float[] sum = strategySum[player];
+        float[] averageStrategy = new float[sum.length];
+        float normalizingValue = 0;
+
+        for (float s : sum) {
+            normalizingValue += s;
+        }
+
+        for (int a = 0; a < sum.length; a++) {
+            averageStrategy[a] = normalizingValue > 0 ? sum[a] / normalizingValue : 1.0f / sum.length;
+        }
+
+        return averageStrategy;
+    }
+
+    /**
+     * @return The exploitability of the average strategies, i.e. the mean of what each player wins by playing a best
+     *         response against the other player's average strategy. It is 0 exactly at a Nash equilibrium.
+     */
+    public float exploitability() {
+        float bestResponses = 0;
+
+        for (int player = 0; player < 2; player++) {
+            float[] utils = new float[player == 0 ? rows : cols];
+            expectedPayoffs(player, getAverageStrategy(1 - player), utils);
+
+            float best = Float.NEGATIVE_INFINITY;
+
+            for (float util : utils) {
+                best = Math.max(best, util);
+            }
+
+            bestResponses += best;
+        }
+
+        return bestResponses / 2;
+    }
+
+    public void printStrategies() {
+        System.out.println("######################################\n");
+        System.out.println("Approximated Nash equilibrium of the " + rows + "x" + cols + " matrix game after N = "
+                + nIterations + " iterations (" + rule + ", " + mode + ").");
+        System.out.printf("Exploitability: %.6f\n", exploitability());
+
+        for (int player = 0; player < 2; player++) {
+            float[] averageStrategy = getAverageStrategy(player);
+            System.out.println("\nPlayer " + (player + 1) + " plays the following actions with a probability of at least 1%:");
+
+            for (int a = 0; a < averageStrategy.length; a++) {
+                if (averageStrategy[a] >= 0.01f) {
+                    System.out.printf("%5d: %1.3f\n", a, averageStrategy[a]);
+                }
+            }
+        }
+
+        System.out.println("\n######################################\n\n");
+    }
+}
@@ -0,0 +1,211 @@
+import jdk.jfr.EventType;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of named metrics describing training runs. Counters are LongAdders, so any number of threads can add to
+ * them without contention; gauges hold the latest value of a measurement, e.g. the time per iteration of the last batch.
+ * The trainers count in plain fields while traversing and only publish their counts here once per batch of iterations
+ * through a Recorder, so the metrics cost next to nothing and can stay enabled.
+ * <p>
+ * Every batch is also committed as a TrainingBatchEvent, which shows up in Java Flight Recorder recordings, e.g. when
+ * starting the program with -XX:StartFlightRecording.
+ * @author Max Jappert
+ */
+public class Metrics {
+    /**
+     * The registry used by the trainers unless they are given another one.
+     */
+    public static final Metrics DEFAULT = new Metrics();
+
+    /**
+     * The number of iterations per batch, after which the trainers publish their counts.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    static final EventType EVENT_TYPE = EventType.getEventType(TrainingBatchEvent.class);
+    static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    // The values of the gauges as bits of doubles.
+    final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param name The name of the counter, e.g. "kuhn.nodesVisited".
+     * @return The counter, which is created if it doesn't exist yet.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Sets the gauge to the given value, creating it if it doesn't exist yet.
+     * @param name The name of the gauge, e.g. "kuhn.exploitability".
+     * @param value The value.
+     */
+    public void setGauge(String name, double value) {
+        gaugeBits(name).set(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @param name The name of the gauge.
+     * @return The latest value of the gauge, or NaN if it has never been set.
+     */
+    public double gauge(String name) {
+        AtomicLong gauge = gauges.get(name);
+        return gauge == null ? Double.NaN : Double.longBitsToDouble(gauge.get());
+    }
+
+    /**
+     * @return The current values of all counters and gauges, sorted by name.
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new TreeMap<>();
+
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, Double.longBitsToDouble(gauge.get())));
+
+        return snapshot;
+    }
+
+    /**
+     * Removes all counters and gauges.
+     */
+    public void reset() {
+        counters.clear();
+        gauges.clear();
+    }
+
+    /**
+     * @param name The name of the gauge.
+     * @return The gauge, which is created if it doesn't exist yet.
+     */
+    AtomicLong gaugeBits(String name) {
+        return gauges.computeIfAbsent(name, n -> new AtomicLong(Double.doubleToRawLongBits(Double.NaN)));
+    }
+
+    /**
+     * @param game The prefix of the metrics, e.g. "kuhn".
+     * @return A recorder which publishes the batches of a trainer under the given prefix.
+     */
+    public Recorder recorder(String game) {
+        return new Recorder(game);
+    }
+
+    /**
+     * Publishes the counts of the batches of a trainer. The counters and gauges are looked up once when the recorder is
+     * created, so recording a batch doesn't allocate anything.
+     */
+    public class Recorder {
+        final String game;
+        final LongAdder iterations;
+        final LongAdder nodesVisited;
+        final LongAdder infoSetsCreated;
+        final LongAdder regretUpdates;
+        final AtomicLong nodesPerSecond;
+        final AtomicLong nanosPerIteration;
+        final AtomicLong allocatedBytesPerIteration;
+        final AtomicLong exploitability;
+
+        Recorder(String game) {
+            this.game = game;
+            iterations = counter(game + ".iterations");
+            nodesVisited = counter(game + ".nodesVisited");
+            infoSetsCreated = counter(game + ".infoSetsCreated");
+            regretUpdates = counter(game + ".regretUpdates");
+            nodesPerSecond = gaugeBits(game + ".nodesPerSecond");
+            nanosPerIteration = gaugeBits(game + ".nanosPerIteration");
+            allocatedBytesPerIteration = gaugeBits(game + ".allocatedBytesPerIteration");
+            exploitability = gaugeBits(game + ".exploitability");
+        }
+
+        /**
+         * Starts the event of a batch, which is passed to recordBatch(...) at its end.
+         * @return The event, or null if Flight Recorder isn't recording it, so that no event has to be allocated.
+         */
+        public TrainingBatchEvent beginBatch() {
+            if (!EVENT_TYPE.isEnabled()) {
+                return null;
+            }
+
+            TrainingBatchEvent event = new TrainingBatchEvent();
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Sets the gauge "game.exploitability".
+         */
+        public void exploitability(float exploitability) {
+            this.exploitability.set(Double.doubleToRawLongBits(exploitability));
+        }
+
+        /**
+         * Publishes the counts of a batch of iterations: the counters "game.iterations", "game.nodesVisited",
+         * "game.infoSetsCreated" and "game.regretUpdates" are increased, the gauges "game.nodesPerSecond",
+         * "game.nanosPerIteration", "game.allocatedBytesPerIteration" and (if known) "game.exploitability" are set, and
+         * the event is committed if Flight Recorder is recording it.
+         * @param event The event returned by beginBatch() when the batch started.
+         * @param algorithm The name of the algorithm.
+         * @param firstIteration The index of the first iteration of the batch.
+         * @param iterations The number of iterations in the batch.
+         * @param nanos The duration of the batch in nanoseconds.
+         * @param nodesVisited The number of nodes visited in the batch.
+         * @param infoSetsCreated The number of information sets created in the batch.
+         * @param regretUpdates The number of cumulative regrets updated in the batch.
+         * @param allocatedBytes The number of bytes allocated by the training thread in the batch.
+         * @param exploitability The latest exploitability of the average strategy, or NaN if it hasn't been computed.
+         */
+        public void recordBatch(TrainingBatchEvent event, String algorithm, long firstIteration, int iterations,
+                                long nanos, long nodesVisited, long infoSetsCreated, long regretUpdates,
+                                long allocatedBytes, float exploitability) {
+            this.iterations.add(iterations);
+            this.nodesVisited.add(nodesVisited);
+            this.infoSetsCreated.add(infoSetsCreated);
+            this.regretUpdates.add(regretUpdates);
+
+            nodesPerSecond.set(Double.doubleToRawLongBits(nanos == 0 ? 0 : nodesVisited * 1e9 / nanos));
+            nanosPerIteration.set(Double.doubleToRawLongBits((double) nanos / iterations));
+            allocatedBytesPerIteration.set(Double.doubleToRawLongBits((double) allocatedBytes / iterations));
+
+            if (!Float.isNaN(exploitability)) {
+                exploitability(exploitability);
+            }
+
+            if (event != null && event.shouldCommit()) {
+                event.game = game;
+                event.algorithm = algorithm;
+                event.firstIteration = firstIteration;
+                event.iterations = iterations;
+                event.nodesVisited = nodesVisited;
+                event.infoSetsCreated = infoSetsCreated;
+                event.regretUpdates = regretUpdates;
+                event.allocatedBytes = allocatedBytes;
+                event.exploitability = exploitability;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes allocated by the calling thread since it was started.
+     */
+    public static long allocatedBytes() {
+        return THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        snapshot().forEach((name, value) -> sb.append(name).append(" = ").append(value).append('\n'));
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Same as ArrayInfoSetStore, but the regret sums, strategy sums, strategies and reach probability sums are kept outside
+ * of the Java heap, so that the bulk of a large table neither has to be scanned by the garbage collector nor fit into
+ * the maximum heap size (see below for what stays on the heap). The table is either held in direct buffers or mapped
+ * from a file, in which case it outlives the JVM and training can continue on it later. The store keeps the number of
+ * finished iterations, so that KuhnPokerCFR.train(store, iterations) continues with the following iteration, which
+ * the rules with discounts (e.g. CFR+ or linear CFR) depend on.
+ * <p>
+ * The values of an information set are stored next to each other in a record: a flag telling whether it has been
+ * visited, the reach probability sum and the regret sums, strategy sums and strategies of every action. A single
+ * buffer can hold at most 2 GB, so the records are spread over chunks of up to CHUNK_BYTES, with no record crossing the
+ * border of a chunk. A file-backed table starts with a header of HEADER_BYTES: the magic number, the format version and
+ * the numbers of cards, history slots and actions, which are checked when the file is opened again, the number of
+ * finished iterations as of the last flush() and two ints which are reserved for later versions and written as 0, so
+ * that the first record starts at byte 32.
+ * <p>
+ * Only the sums and strategies are kept off the heap. The bookkeeping of IndexedInfoSetStore, i.e. the reach
+ * probability of the running iteration, the visited and touched flags, the list of touched information sets and the
+ * last iteration of every information set, stays in arrays on the heap and takes 14 bytes per information set (compared
+ * to 32 bytes per record for two actions), plus at most 16 kB for the discount logs. The maximum heap size therefore
+ * still has to allow for 14 bytes times numCards * numHistories; memoryFootprint() includes these arrays. Only the
+ * records outlive the JVM: the reach probabilities and pending updates of an unfinished iteration are lost, and flush()
+ * applies the pending discounts first.
+ * @author Max Jappert
+ */
+public class OffHeapInfoSetStore extends IndexedInfoSetStore implements Closeable {
+    static final int MAGIC = 0x43465254; // "CFRT"
+    static final int VERSION = 1;
+    // Six ints are written, see the description of the class.
+    static final int HEADER_BYTES = 8 * Integer.BYTES;
+    static final int ITERATIONS_POSITION = 5 * Integer.BYTES;
+    static final int CHUNK_BYTES = 1 << 30;
+
+    // The positions of the values within a record, in floats.
+    static final int FLAGS = 0;
+    static final int REACH_PROB_SUM = 1;
+    static final int REGRET_SUM = 2;
+
+    final int strategySumField;
+    final int strategyField;
+    final int recordBytes;
+    final int recordsPerChunk;
+
+    ByteBuffer[] chunks;
+    final Path path;
+    // The header of a file-backed table, or null.
+    MappedByteBuffer header;
+    // The number of iterations for which the table has been trained, see KuhnPokerCFR.train(store, iterations).
+    int iterations = 0;
+
+    /**
+     * Creates a table in direct buffers, which is freed together with this object.
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    public OffHeapInfoSetStore(int numCards, int numHistories) {
+        super(numCards, numHistories);
+
+        strategySumField = REGRET_SUM + numActions;
+        strategyField = strategySumField + numActions;
+        recordBytes = (strategyField + numActions) * Float.BYTES;
+        recordsPerChunk = CHUNK_BYTES / recordBytes;
+        path = null;
+
+        chunks = new ByteBuffer[numChunks()];
+
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(chunkBytes(c)).order(ByteOrder.nativeOrder());
+        }
+
+        initStrategies();
+    }
+
+    /**
+     * Maps the table from the given file. If the file doesn't exist or is empty, a new table is created in it;
+     * otherwise the information sets and the number of finished iterations stored in it are loaded and training
+     * continues from there.
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     * @param path The file holding the table.
+     * @throws IOException If the file can't be mapped or was created for a different game.
+     */
+    public OffHeapInfoSetStore(int numCards, int numHistories, Path path) throws IOException {
+        super(numCards, numHistories);
+
+        strategySumField = REGRET_SUM + numActions;
+        strategyField = strategySumField + numActions;
+        recordBytes = (strategyField + numActions) * Float.BYTES;
+        recordsPerChunk = CHUNK_BYTES / recordBytes;
+        this.path = path;
+
+        chunks = new ByteBuffer[numChunks()];
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean created = channel.size() == 0;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+            if (created) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(numCards).putInt(numHistories).putInt(numActions);
+            } else if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException(path + " is not an information set table.");
+            } else if (header.getInt(2 * Integer.BYTES) != numCards || header.getInt(3 * Integer.BYTES) != numHistories
+                    || header.getInt(4 * Integer.BYTES) != numActions) {
+                throw new IOException(path + " was created for a different game.");
+            } else {
+                iterations = header.getInt(ITERATIONS_POSITION);
+            }
+
+            long position = HEADER_BYTES;
+
+            for (int c = 0; c < chunks.length; c++) {
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes(c))
+                        .order(ByteOrder.nativeOrder());
+                position += chunkBytes(c);
+            }
+
+            if (created) {
+                initStrategies();
+            } else {
+                for (int index = 0; index < capacity; index++) {
+                    if (getFloat(index, FLAGS) != 0) {
+                        super.markVisited(index);
+                    }
+                }
+            }
+        }
+    }
+
+    private int numChunks() {
+        return (capacity + recordsPerChunk - 1) / recordsPerChunk;
+    }
+
+    private int chunkBytes(int chunk) {
+        return Math.min(recordsPerChunk, capacity - chunk * recordsPerChunk) * recordBytes;
+    }
+
+    private void initStrategies() {
+        for (int index = 0; index < capacity; index++) {
+            for (int a = 0; a < numActions; a++) {
+                setStrategy(index, a, 1.0f / numActions);
+            }
+        }
+    }
+
+    private float getFloat(int index, int field) {
+        return chunks[index / recordsPerChunk].getFloat(index % recordsPerChunk * recordBytes + field * Float.BYTES);
+    }
+
+    private void putFloat(int index, int field, float value) {
+        chunks[index / recordsPerChunk].putFloat(index % recordsPerChunk * recordBytes + field * Float.BYTES, value);
+    }
+
+    /**
+     * Also sets the flag in the record, so that a file-backed table knows which information sets have been visited
+     * when it is opened again.
+     */
+    @Override
+    void markVisited(int index) {
+        if (!visited[index]) {
+            putFloat(index, FLAGS, 1);
+        }
+
+        super.markVisited(index);
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return getFloat(index, strategyField + action);
+    }
+
+    @Override
+    void setStrategy(int index, int action, float probability) {
+        putFloat(index, strategyField + action, probability);
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return getFloat(index, REGRET_SUM + action);
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        putFloat(index, REGRET_SUM + action, value);
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return getFloat(index, strategySumField + action);
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        putFloat(index, strategySumField + action, value);
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return getFloat(index, REACH_PROB_SUM);
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        putFloat(index, REACH_PROB_SUM, value);
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        putFloat(index, REGRET_SUM + action, getFloat(index, REGRET_SUM + action) + regret);
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        for (int a = 0; a < numActions; a++) {
+            putFloat(index, strategySumField + a, getFloat(index, strategySumField + a) + weight * getStrategy(index, a));
+        }
+
+        putFloat(index, REACH_PROB_SUM, getFloat(index, REACH_PROB_SUM) + weight);
+    }
+
+    @Override
+    void nextStrategy(int index, double strategySumFactor, double positiveFactor, double negativeFactor) {
+        float strategyFactor = (float) strategySumFactor;
+
+        for (int a = 0; a < numActions; a++) {
+            float strategySum = getFloat(index, strategySumField + a);
+            putFloat(index, strategySumField + a, strategySum * strategyFactor + reachProb[index] * getStrategy(index, a));
+
+            float regretSum = getFloat(index, REGRET_SUM + a);
+            putFloat(index, REGRET_SUM + a, regretSum * (float) (regretSum > 0 ? positiveFactor : negativeFactor));
+        }
+
+        calcStrategy(index);
+
+        putFloat(index, REACH_PROB_SUM, getFloat(index, REACH_PROB_SUM) * strategyFactor + reachProb[index]);
+        reachProb[index] = 0;
+    }
+
+    @Override
+    public void resetStrategySums() {
+        for (int index = 0; index < capacity; index++) {
+            for (int a = 0; a < numActions; a++) {
+                putFloat(index, strategySumField + a, 0);
+            }
+        }
+    }
+
+    /**
+     * @return The number of iterations for which the table has been trained.
+     */
+    public int iterations() {
+        return iterations;
+    }
+
+    /**
+     * Brings every information set up to date, so that the discounts which are still pending are applied to the table
+     * (see IndexedInfoSetStore), and writes the changes of a file-backed table and the number of finished iterations
+     * to the file.
+     */
+    public void flush() {
+        catchUp();
+
+        if (path == null) {
+            return;
+        }
+
+        header.putInt(ITERATIONS_POSITION, iterations);
+        header.force();
+
+        for (ByteBuffer chunk : chunks) {
+            ((MappedByteBuffer) chunk).force();
+        }
+    }
+
+    /**
+     * Flushes the table. The memory is released once the store is garbage collected, since buffers can't be freed
+     * explicitly.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * The off-heap table is included, although it isn't part of the heap.
+     */
+    @Override
+    public long memoryFootprint() {
+        return super.memoryFootprint() + (long) capacity * recordBytes;
+    }
+}
@@ -1,5 +1,3 @@
-//import java.io.File;
-//import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 
@@ -7,8 +5,10 @@ import java.util.*;
  * Class which deals with playing Kuhn poker as a game, either between a human agent and an AI or between two AIs
  */
 public class PlayKuhnPoker {
-    Map<String, InformationSet> iMapTrained;
-    Map<String, InformationSet> iMapUntrained;
+    // The strategies of the AIs, frozen once so that a decision doesn't recompute the average strategy.
+    FrozenPolicy policyTrained;
+    FrozenPolicy policyUntrained;
+    Random random = new Random();
     int card;
     int opCard;
 
@@ -28,27 +28,27 @@ public class PlayKuhnPoker {
 
     int p1wins = 0;
 
-//    FileWriter fw;
+    // Traces player 1's average payoff per round, or null.
+    TraceWriter payoffTrace;
+    float[] payoffRecord = new float[1];
 
     public PlayKuhnPoker(Map<String, InformationSet> iMap, boolean interactive) throws IOException {
-        this.iMapTrained = iMap;
+        this.policyTrained = FrozenPolicy.freeze(iMap, KuhnPokerCFR.DEFAULT_NUM_CARDS);
+        this.policyUntrained = FrozenPolicy.uniform(KuhnPokerCFR.DEFAULT_NUM_CARDS);
         this.interactive = interactive;
 
         totalPayoffP1 = 0;
 
         p1starts = true;
+    }
 
-        iMapUntrained = new HashMap<>();
-//
-//        File file = new File("plots/winRate.txt");
-//
-//        file.createNewFile();
-//
-//        fw = new FileWriter(file);
-
-        for (InformationSet iset : this.iMapTrained.values()) {
-            iMapUntrained.put(iset.key, new InformationSet(iset.key));
-        }
+    /**
+     * Traces player 1's average payoff per round after every round of the following games. The trace isn't closed by
+     * this class.
+     * @param trace A trace with a single column, or null to stop tracing.
+     */
+    public void setPayoffTrace(TraceWriter trace) {
+        this.payoffTrace = trace;
     }
 
     /**
@@ -60,12 +60,12 @@ public class PlayKuhnPoker {
             System.out.println("Round " + i + ", player " + (p1starts ? 1 : 2) + " starts:");
             totalPayoffP1 += playRound();
 
-//            fw.write(totalPayoffP1 / i + "\n");
+            if (payoffTrace != null && payoffTrace.shouldRecord(i)) {
+                payoffRecord[0] = totalPayoffP1 / i;
+                payoffTrace.record(i, payoffRecord);
+            }
         }
 
-//        fw.flush();
-//        fw.close();
-
         System.out.println("Total payoff for P1: " + totalPayoffP1);
         System.out.println("Total wins for P1: " + p1wins + "/" + nRounds);
         System.out.printf("Win rate for P1: %.2f%c \n\n", (float)p1wins / nRounds * 100, '%');
@@ -82,8 +82,8 @@ public class PlayKuhnPoker {
         opCard = -1;
 
         while (card == opCard) {
-            card = new Random().nextInt(3);
-            opCard = new Random().nextInt(3);
+            card = random.nextInt(3);
+            opCard = random.nextInt(3);
         }
 
         if (card == 0) {
@@ -150,22 +150,23 @@ public class PlayKuhnPoker {
      * @return Player 1's payoff.
      */
     private float p1Move() {
-        Scanner sc = new Scanner(System.in);
-
         System.out.print("Check or bet? [c/b] ");
 
-        String move = sc.next();
+        String move = Main.sc.next();
+
+        // Asks again until the input is valid.
+        while (!move.equalsIgnoreCase("c") && !move.equalsIgnoreCase("b")) {
+            System.out.print("The input should be either 'c' or 'b'. Check or bet? [c/b] ");
+            move = Main.sc.next();
+        }
 
         if (move.equalsIgnoreCase("c")) {
             history = history + "c";
             System.out.println("You have checked.");
-        } else if (move.equalsIgnoreCase("b")) {
+        } else {
             history = history + "b";
             System.out.println("You have bet.");
             p1bet = true;
-        } else {
-            System.out.println("The input should be either 'c' or 'b'.");
-            p1Move();
         }
 
         if (KuhnPokerCFR.isTerminal(history)) {
@@ -182,22 +183,14 @@ public class PlayKuhnPoker {
      * @return Player 1's payoff.
      */
     private float aiMove(boolean p1, boolean trained) {
+        FrozenPolicy policy = trained ? policyTrained : policyUntrained;
+        int aiCard = p1 ? card : opCard;
 
-        InformationSet currentSet;
-        if (trained) {
-            currentSet = iMapTrained.get(opCardChar + " " + history);
-        } else {
-            currentSet = iMapUntrained.get(opCardChar + " " + history);
-        }
-
-        float[] strategy = currentSet.getAverageStrategy();
-
-        if (strategy[0] < 0 && strategy[1] > 1) {
-            System.out.println("Error, error!!");
-        } else if (strategy[0] <= new Random().nextFloat()) {
+        // Action 0 is checking, action 1 betting.
+        if (policy.sample(policy.id(aiCard, history), random) == 0) {
             history = history + "c";
             System.out.println("Your opponent has checked");
-        } else if (strategy[1] <= 1) {
+        } else {
             history = history + "b";
             System.out.println("Your opponent has bet");
             if (p1) {
@@ -0,0 +1,29 @@
+/**
+ * The number formats in which an indexed information set store can keep the regret sums and strategy sums. The
+ * choice trades memory per information set for accuracy, see bytesPerInfoSet() of the stores.
+ * @author Max Jappert
+ */
+public enum Precision {
+    /** Doubles, for very long runs in which float sums stop absorbing the updates, see DoubleInfoSetStore. */
+    DOUBLE,
+    /** Floats, like InformationSet, see ArrayInfoSetStore. */
+    FLOAT,
+    /** 16-bit integers with a scale per information set, for games which are bound by memory, see QuantisedInfoSetStore. */
+    QUANTISED;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     * @return A new, empty store which keeps the sums in this format.
+     */
+    public IndexedInfoSetStore newStore(int numCards, int numHistories) {
+        switch (this) {
+            case DOUBLE:
+                return new DoubleInfoSetStore(numCards, numHistories);
+            case QUANTISED:
+                return new QuantisedInfoSetStore(numCards, numHistories);
+            default:
+                return new ArrayInfoSetStore(numCards, numHistories);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Information set store for games whose tables don't fit into memory as floats. The regret sums and strategy sums are
+ * kept as 16-bit integers, with a power-of-two scale per information set, i.e. the value of action a at index i is
+ * regretSum[i * numActions + a] * 2^regretExponent[i]. The current strategies are kept as 16-bit fixed-point numbers.
+ * <p>
+ * When a sum outgrows the 16 bits, the scale of its information set is coarsened and the other actions are requantised
+ * with it. After discounting in nextStrategies(...), information sets whose values have shrunk far below the range of
+ * the 16 bits are rescaled to regain their precision. Rounding is stochastic, so that the many small updates which are
+ * finer than the scale are still accumulated correctly on average instead of being rounded away.
+ * @author Max Jappert
+ */
+public class QuantisedInfoSetStore extends IndexedInfoSetStore {
+    // The exponent of an information set whose values are all 0.
+    static final int MIN_EXPONENT = Byte.MIN_VALUE;
+    // After coarsening or rescaling, the largest value of an information set is quantised to less than 2^REGRET_BITS
+    // or 2^STRATEGY_SUM_BITS, leaving room for it to double before the scale has to be coarsened again.
+    static final int REGRET_BITS = 14;
+    static final int STRATEGY_SUM_BITS = 15;
+    // An information set is rescaled if its largest value has fallen below 2^(bits - RESCALE_SLACK).
+    static final int RESCALE_SLACK = 3;
+    static final float STRATEGY_ONE = Character.MAX_VALUE;
+
+    short[] regretSum;
+    byte[] regretExponent;
+    char[] strategySum;
+    byte[] strategySumExponent;
+    char[] strategy;
+    float[] reachProbSum;
+
+    // The state of the xorshift generator used for stochastic rounding.
+    long seed = 0x9E3779B97F4A7C15L;
+
+    /**
+     * @param numCards The number of cards in the deck.
+     * @param numHistories The number of history slots per card.
+     */
+    public QuantisedInfoSetStore(int numCards, int numHistories) {
+        super(numCards, numHistories);
+
+        regretSum = new short[capacity * numActions];
+        regretExponent = new byte[capacity];
+        strategySum = new char[capacity * numActions];
+        strategySumExponent = new byte[capacity];
+        strategy = new char[capacity * numActions];
+        reachProbSum = new float[capacity];
+
+        for (int index = 0; index < capacity; index++) {
+            regretExponent[index] = MIN_EXPONENT;
+            strategySumExponent[index] = MIN_EXPONENT;
+
+            for (int a = 0; a < numActions; a++) {
+                setStrategy(index, a, 1.0f / numActions);
+            }
+        }
+    }
+
+    @Override
+    public float getStrategy(int index, int action) {
+        return strategy[index * numActions + action] / STRATEGY_ONE;
+    }
+
+    @Override
+    void setStrategy(int index, int action, float probability) {
+        strategy[index * numActions + action] = (char) Math.round(probability * STRATEGY_ONE);
+    }
+
+    @Override
+    public float getRegretSum(int index, int action) {
+        return Math.scalb((float) regretSum[index * numActions + action], regretExponent[index]);
+    }
+
+    @Override
+    public void setRegretSum(int index, int action, float value) {
+        if (Math.abs(Math.scalb(value, -regretExponent[index])) >= Short.MAX_VALUE) {
+            // The value doesn't fit into 16 bits with the current scale.
+            rescaleRegrets(index, Math.getExponent(value) + 1 - REGRET_BITS);
+        }
+
+        regretSum[index * numActions + action] = (short) round(Math.scalb(value, -regretExponent[index]));
+    }
+
+    @Override
+    public float getStrategySum(int index, int action) {
+        return Math.scalb((float) strategySum[index * numActions + action], strategySumExponent[index]);
+    }
+
+    @Override
+    public void setStrategySum(int index, int action, float value) {
+        if (Math.scalb(value, -strategySumExponent[index]) >= Character.MAX_VALUE) {
+            rescaleStrategySums(index, Math.getExponent(value) + 1 - STRATEGY_SUM_BITS);
+        }
+
+        strategySum[index * numActions + action] = (char) round(Math.scalb(value, -strategySumExponent[index]));
+    }
+
+    @Override
+    public float getReachProbSum(int index) {
+        return reachProbSum[index];
+    }
+
+    @Override
+    public void setReachProbSum(int index, float value) {
+        reachProbSum[index] = value;
+    }
+
+    @Override
+    public void addRegret(int index, int action, float regret) {
+        setRegretSum(index, action, getRegretSum(index, action) + regret);
+    }
+
+    @Override
+    public void addToAverage(int index, float weight) {
+        for (int a = 0; a < numActions; a++) {
+            setStrategySum(index, a, getStrategySum(index, a) + weight * getStrategy(index, a));
+        }
+
+        reachProbSum[index] += weight;
+    }
+
+    @Override
+    void nextStrategy(int index, double strategySumFactor, double positiveFactor, double negativeFactor) {
+        float strategyFactor = (float) strategySumFactor;
+        boolean discountRegrets = (float) positiveFactor != 1 || (float) negativeFactor != 1;
+
+        for (int a = 0; a < numActions; a++) {
+            float strategySum = getStrategySum(index, a) * strategyFactor + reachProb[index] * getStrategy(index, a);
+            setStrategySum(index, a, strategySum);
+
+            if (discountRegrets) {
+                float regret = getRegretSum(index, a);
+                setRegretSum(index, a, regret * (float) (regret > 0 ? positiveFactor : negativeFactor));
+            }
+        }
+
+        if (discountRegrets) {
+            rescaleRegretsIfShrunk(index);
+        }
+
+        if (strategyFactor != 1) {
+            rescaleStrategySumsIfShrunk(index);
+        }
+
+        calcStrategy(index);
+
+        reachProbSum[index] = reachProbSum[index] * strategyFactor + reachProb[index];
+        reachProb[index] = 0;
+    }
+
+    @Override
+    public void resetStrategySums() {
+        for (int index = 0; index < capacity; index++) {
+            strategySumExponent[index] = MIN_EXPONENT;
+
+            for (int a = 0; a < numActions; a++) {
+                strategySum[index * numActions + a] = 0;
+            }
+        }
+    }
+
+    /**
+     * Requantises the regret sums of the information set with the scale 2^exponent.
+     */
+    private void rescaleRegrets(int index, int exponent) {
+        exponent = Math.max(exponent, MIN_EXPONENT);
+        int shift = regretExponent[index] - exponent;
+
+        for (int i = index * numActions; i < (index + 1) * numActions; i++) {
+            regretSum[i] = (short) round(Math.scalb((float) regretSum[i], shift));
+        }
+
+        regretExponent[index] = (byte) exponent;
+    }
+
+    /**
+     * Requantises the strategy sums of the information set with the scale 2^exponent.
+     */
+    private void rescaleStrategySums(int index, int exponent) {
+        exponent = Math.max(exponent, MIN_EXPONENT);
+        int shift = strategySumExponent[index] - exponent;
+
+        for (int i = index * numActions; i < (index + 1) * numActions; i++) {
+            strategySum[i] = (char) round(Math.scalb((float) strategySum[i], shift));
+        }
+
+        strategySumExponent[index] = (byte) exponent;
+    }
+
+    private void rescaleRegretsIfShrunk(int index) {
+        int max = 0;
+
+        for (int i = index * numActions; i < (index + 1) * numActions; i++) {
+            max = Math.max(max, Math.abs(regretSum[i]));
+        }
+
+        if (max == 0) {
+            regretExponent[index] = MIN_EXPONENT;
+        } else if (max < 1 << REGRET_BITS - RESCALE_SLACK) {
+            rescaleRegrets(index, Math.getExponent((float) max) + 1 + regretExponent[index] - REGRET_BITS);
+        }
+    }
+
+    private void rescaleStrategySumsIfShrunk(int index) {
+        int max = 0;
+
+        for (int i = index * numActions; i < (index + 1) * numActions; i++) {
+            max = Math.max(max, strategySum[i]);
+        }
+
+        if (max == 0) {
+            strategySumExponent[index] = MIN_EXPONENT;
+        } else if (max < 1 << STRATEGY_SUM_BITS - RESCALE_SLACK) {
+            rescaleStrategySums(index, Math.getExponent((float) max) + 1 + strategySumExponent[index] - STRATEGY_SUM_BITS);
+        }
+    }
+
+    /**
+     * Rounds stochastically: x is rounded up with a probability equal to its fractional part, so that the expected
+     * value of the result is x.
+     */
+    private float round(float x) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+
+        return (float) Math.floor(x + (seed >>> 40) * 0x1.0p-24f);
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return super.memoryFootprint()
+                + (long) Short.BYTES * (regretSum.length + strategySum.length + strategy.length)
+                + regretExponent.length + strategySumExponent.length
+                + (long) Float.BYTES * reachProbSum.length;
+    }
+}
@@ -18,6 +18,10 @@ public class RockPaperScissorsCFR {
 
     int nIterations;
 
+    Random random = new Random();
+
+    Metrics.Recorder metrics = Metrics.DEFAULT.recorder("rps");
+
     /**
      * Initializes the payoff matrix.
      * @return A 2D-array representing the following matrix:
@@ -51,7 +55,7 @@ public class RockPaperScissorsCFR {
     private int choice(int[] possibilities, float[] p) {
         assert(possibilities.length == p.length);
 
-        float r = new Random().nextFloat();
+        float r = random.nextFloat();
 
         int result = -1;
 
@@ -149,12 +153,31 @@ public class RockPaperScissorsCFR {
 
     /**
      * The method where the self-play takes place. This is done by iteratively repeating the steps presented in
-     * my paper.
+     * my paper. The counts of every batch of iterations are published to the metrics, see Metrics.
      * @param iterations The number of desired iterations.
      */
     public void train(int iterations) {
         nIterations = iterations;
-        for (int i = 0; i < nIterations; i++) {
+
+        for (int batch = 0; batch < nIterations; batch += Metrics.BATCH_SIZE) {
+            int batchIterations = Math.min(Metrics.BATCH_SIZE, nIterations - batch);
+
+            TrainingBatchEvent event = metrics.beginBatch();
+
+            long startTime = System.nanoTime();
+            long startBytes = Metrics.allocatedBytes();
+
+            trainBatch(batchIterations);
+
+            // Each iteration visits one decision node per player and updates the regrets of all their actions.
+            metrics.recordBatch(event, "sampled regret matching", batch, batchIterations,
+                    System.nanoTime() - startTime, 2L * batchIterations, batch == 0 ? 2 : 0,
+                    2L * numActions * batchIterations, Metrics.allocatedBytes() - startBytes, exploitability());
+        }
+    }
+
+    private void trainBatch(int iterations) {
+        for (int i = 0; i < iterations; i++) {
             float[] myStrategy = getStrategy(regretSum);
             float[] opStrategy = getStrategy(opRegretSum);
 
@@ -182,6 +205,32 @@ public class RockPaperScissorsCFR {
         }
     }
 
+    /**
+     * @return The exploitability of the average strategies, i.e. the mean of what each player wins by playing a best
+     *         response against the other player's average strategy.
+     */
+    public float exploitability() {
+        float[] myAverage = getAverageStrategy(strategySum);
+        float[] opAverage = getAverageStrategy(opStrategySum);
+        float myBest = Float.NEGATIVE_INFINITY;
+        float opBest = Float.NEGATIVE_INFINITY;
+
+        for (int action = 0; action < numActions; action++) {
+            float myUtil = 0;
+            float opUtil = 0;
+
+            for (int other = 0; other < numActions; other++) {
+                myUtil += getReward(action, other) * opAverage[other];
+                opUtil += getReward(action, other) * myAverage[other];
+            }
+
+            myBest = Math.max(myBest, myUtil);
+            opBest = Math.max(opBest, opUtil);
+        }
+
+        return (myBest + opBest) / 2;
+    }
+
     public void printStrategies() {
         float myTotalStrategySum = strategySum[0] + strategySum[1] + strategySum[2];
 
@@ -0,0 +1,400 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Trains Kuhn poker with a sampling algorithm on several worker processes (see ShardWorker), e.g. on several JVMs on
+ * one machine. The coordinator listens on a local socket, and training runs in rounds: every worker trains its share of
+ * syncInterval iterations on its own copy of the table and sends the changes, the coordinator adds them to its table
+ * in the order of the workers and broadcasts the merged regret sums of the changed information sets, from which every
+ * worker continues with the same strategy. Between two broadcasts the workers don't see each other's updates, so a
+ * longer sync interval means less communication but a staler strategy.
+ * <p>
+ * The coordinator measures how long each round takes and how long the slowest worker computed in it; the difference is
+ * the time spent sending, merging and waiting, see Report.
+ * @author Max Jappert
+ */
+public class ShardCoordinator implements Closeable {
+    // How long the coordinator waits for the workers to connect.
+    static final int ACCEPT_TIMEOUT_MILLIS = 60_000;
+
+    final KuhnPokerCFR.Algorithm algorithm;
+    final int numCards;
+    final int numWorkers;
+    final int syncInterval;
+    final Random random;
+
+    final ServerSocket server;
+    Report report = new Report();
+
+    /**
+     * The time and the traffic of a training run.
+     */
+    public static class Report {
+        int rounds;
+        long wallNanos;
+        long computeNanos;
+        long mergeNanos;
+        long bytesReceived;
+        long rawBytesReceived;
+        long bytesSent;
+        long rawBytesSent;
+
+        /**
+         * @return The fraction of the time which isn't spent computing by the slowest worker of each round.
+         */
+        public double communicationFraction() {
+            return wallNanos == 0 ? 0 : 1 - (double) computeNanos / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rounds in %.1f ms: %.1f ms computing (slowest worker), %.1f ms (%.1f%%) "
+                            + "communicating, merging and waiting, of which %.1f ms merging; %.1f kB per round "
+                            + "(%.1f%% of uncompressed)",
+                    rounds, wallNanos / 1e6, computeNanos / 1e6, (wallNanos - computeNanos) / 1e6,
+                    communicationFraction() * 100, mergeNanos / 1e6,
+                    (bytesReceived + bytesSent) / 1024.0 / Math.max(rounds, 1),
+                    100.0 * (bytesReceived + bytesSent) / Math.max(rawBytesReceived + rawBytesSent, 1));
+        }
+    }
+
+    /**
+     * Starts listening on a free port of the loopback interface.
+     * @param algorithm The sampling algorithm trained by the workers.
+     * @param numCards The number of cards in the deck.
+     * @param numWorkers The number of workers which have to connect before training starts.
+     * @param syncInterval The number of iterations every worker trains between two broadcasts.
+     * @param seed The seed from which the workers' randoms are seeded.
+     */
+    public ShardCoordinator(KuhnPokerCFR.Algorithm algorithm, int numCards, int numWorkers, int syncInterval, long seed)
+            throws IOException {
+        if (algorithm != KuhnPokerCFR.Algorithm.OUTCOME_SAMPLING && algorithm != KuhnPokerCFR.Algorithm.EXTERNAL_SAMPLING) {
+            throw new IllegalArgumentException("Only the sampling algorithms can be trained by workers, not " + algorithm + ".");
+        }
+
+        if (numWorkers < 1 || syncInterval < 1) {
+            throw new IllegalArgumentException("The number of workers and the sync interval must be positive.");
+        }
+
+        this.algorithm = algorithm;
+        this.numCards = numCards;
+        this.numWorkers = numWorkers;
+        this.syncInterval = syncInterval;
+        this.random = new Random(seed);
+
+        server = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @return The port on which the workers connect.
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return The time and traffic of the last call of train(...).
+     */
+    public Report report() {
+        return report;
+    }
+
+    /**
+     * Starts worker processes on this machine, which run with the same Java and class path as this JVM.
+     * @param count The number of workers.
+     * @return The processes, whose output is shown in the output of this process.
+     */
+    public List<Process> spawnWorkers(int count) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+
+        for (int w = 0; w < count; w++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "ShardWorker",
+                    InetAddress.getLoopbackAddress().getHostAddress(), Integer.toString(port()))
+                    .inheritIO()
+                    .start());
+        }
+
+        return processes;
+    }
+
+    /**
+     * Waits for the workers to connect and trains the given number of iterations with them.
+     * @param iterations The number of iterations of all workers together.
+     * @return The trainer holding the merged table, e.g. for computing the exploitability.
+     * @throws IOException If a worker doesn't connect in time, disconnects or doesn't follow the protocol.
+     */
+    public KuhnPokerCFR train(int iterations) throws IOException {
+        KuhnPokerCFR kp = new KuhnPokerCFR(algorithm, Precision.FLOAT, UpdateRule.VANILLA, numCards);
+        InfoSetStore store = kp.newStore();
+        kp.store = store;
+        kp.nIterations = iterations;
+
+        int numActions = KuhnPokerCFR.numActions;
+        int numKeys = numCards * KuhnPokerCFR.numHistories;
+
+        Socket[] sockets = new Socket[numWorkers];
+        DataInputStream[] in = new DataInputStream[numWorkers];
+        DataOutputStream[] out = new DataOutputStream[numWorkers];
+        boolean[] active = new boolean[numWorkers];
+
+        try {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+
+            int[] shares = shares(iterations);
+
+            for (int w = 0; w < numWorkers; w++) {
+                sockets[w] = server.accept();
+                sockets[w].setTcpNoDelay(true);
+                in[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream(), 1 << 16));
+                out[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream(), 1 << 16));
+
+                out[w].writeInt(ShardWorker.MAGIC);
+                out[w].writeInt(ShardWorker.VERSION);
+                out[w].writeUTF(algorithm.name());
+                out[w].writeInt(numCards);
+                out[w].writeLong(random.nextLong());
+                out[w].writeInt(shares[w]);
+                out[w].flush();
+
+                active[w] = shares[w] > 0;
+            }
+
+            report = new Report();
+
+            boolean[] changed = new boolean[numKeys];
+            ByteBuffer broadcast = ByteBuffer.allocate(Integer.BYTES + numKeys * (Integer.BYTES + numActions * Float.BYTES));
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            Inflater inflater = new Inflater();
+            int done = 0;
+            long roundStart = System.nanoTime();
+
+            while (done < iterations) {
+                long slowest = 0;
+                long mergeNanos = 0;
+
+                // Reading the workers in a fixed order makes the merged sums independent of which worker finished first.
+                for (int w = 0; w < numWorkers; w++) {
+                    if (!active[w]) {
+                        continue;
+                    }
+
+                    ByteBuffer changes = ShardWorker.readFrame(in[w], inflater);
+                    report.rawBytesReceived += changes.remaining();
+                    report.bytesReceived += 2 * Integer.BYTES + inflater.getBytesRead();
+
+                    long mergeStart = System.nanoTime();
+                    slowest = Math.max(slowest, changes.getLong());
+                    kp.nodesVisited += changes.getLong();
+                    merge(store, changes, changed);
+                    mergeNanos += System.nanoTime() - mergeStart;
+                }
+
+                done += sum(shares);
+                shares = shares(iterations - done);
+
+                broadcast.clear();
+                broadcast.putInt(0);
+                int count = 0;
+
+                for (int key = 0; key < numKeys; key++) {
+                    if (!changed[key]) {
+                        continue;
+                    }
+
+                    int slot = key % KuhnPokerCFR.numHistories;
+                    int index = store.findIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                            KuhnPokerCFR.slotBits(slot));
+
+                    broadcast.putInt(key);
+
+                    for (int a = 0; a < numActions; a++) {
+                        broadcast.putFloat(store.getRegretSum(index, a));
+                    }
+
+                    changed[key] = false;
+                    count++;
+                }
+
+                broadcast.putInt(0, count);
+                broadcast.flip();
+
+                for (int w = 0; w < numWorkers; w++) {
+                    if (!active[w]) {
+                        continue;
+                    }
+
+                    report.rawBytesSent += broadcast.remaining();
+
+                    out[w].writeInt(shares[w]);
+                    report.bytesSent += Integer.BYTES + ShardWorker.writeFrame(out[w], broadcast.duplicate(), deflater);
+                    out[w].flush();
+
+                    active[w] = shares[w] > 0;
+                }
+
+                long now = System.nanoTime();
+                report.rounds++;
+                report.wallNanos += now - roundStart;
+                report.computeNanos += slowest;
+                report.mergeNanos += mergeNanos;
+                roundStart = now;
+            }
+
+            deflater.end();
+            inflater.end();
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+
+        return kp;
+    }
+
+    /**
+     * Splits the iterations of the next round among the workers.
+     * @param remaining The number of iterations which haven't been trained yet.
+     * @return The number of iterations of every worker, which is 0 for all workers after the last round.
+     */
+    private int[] shares(int remaining) {
+        int round = (int) Math.min(remaining, (long) numWorkers * syncInterval);
+        int[] shares = new int[numWorkers];
+
+        for (int w = 0; w < numWorkers; w++) {
+            shares[w] = round / numWorkers + (w < round % numWorkers ? 1 : 0);
+        }
+
+        return shares;
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+
+        for (int value : values) {
+            sum += value;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Adds the changes sent by a worker to the store and marks the changed key indices.
+     */
+    private static void merge(InfoSetStore store, ByteBuffer changes, boolean[] changed) {
+        int count = changes.getInt();
+
+        for (int r = 0; r < count; r++) {
+            int key = changes.getInt();
+            int slot = key % KuhnPokerCFR.numHistories;
+            int index = store.getIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                    KuhnPokerCFR.slotBits(slot));
+
+            for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                store.addRegret(index, a, changes.getFloat());
+            }
+
+            for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                store.setStrategySum(index, a, store.getStrategySum(index, a) + changes.getFloat());
+            }
+
+            store.setReachProbSum(index, store.getReachProbSum(index) + changes.getFloat());
+            changed[key] = true;
+        }
+    }
+
+    /**
+     * Stops listening for workers.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Trains with worker processes on this machine, once for every given sync interval, and prints the report and the
+     * exploitability of each run, e.g.
+     * <pre>
+     * java -jar run.jar --coordinator --workers 4 --iterations 1000000 --sync 100,1000,10000 --spawn
+     * </pre>
+     * Without --spawn, the coordinator prints its port and waits for the workers to be started by hand with
+     * java -jar run.jar --worker localhost &lt;port&gt;. The other options are --algorithm (EXTERNAL_SAMPLING or
+     * OUTCOME_SAMPLING), --cards and --seed.
+     */
+    public static void main(String[] args) throws IOException {
+        KuhnPokerCFR.Algorithm algorithm = KuhnPokerCFR.Algorithm.EXTERNAL_SAMPLING;
+        int numCards = KuhnPokerCFR.DEFAULT_NUM_CARDS;
+        int workers = 2;
+        int iterations = 1_000_000;
+        String syncIntervals = "1000";
+        long seed = 1;
+        boolean spawn = false;
+
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+
+            if (args[i].equals("--algorithm") && hasValue) {
+                algorithm = KuhnPokerCFR.Algorithm.valueOf(args[++i]);
+            } else if (args[i].equals("--cards") && hasValue) {
+                numCards = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--workers") && hasValue) {
+                workers = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--iterations") && hasValue) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--sync") && hasValue) {
+                syncIntervals = args[++i];
+            } else if (args[i].equals("--seed") && hasValue) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--spawn")) {
+                spawn = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i] + ". Usage: [--algorithm <name>] "
+                        + "[--cards <n>] [--workers <n>] [--iterations <n>] [--sync <n>,<n>,...] [--seed <n>] [--spawn]");
+            }
+        }
+
+        for (String syncInterval : syncIntervals.split(",")) {
+            try (ShardCoordinator coordinator = new ShardCoordinator(algorithm, numCards, workers,
+                    Integer.parseInt(syncInterval.strip()), seed)) {
+                List<Process> processes = new ArrayList<>();
+
+                if (spawn) {
+                    processes = coordinator.spawnWorkers(workers);
+                } else {
+                    System.out.println("Waiting for " + workers + " workers on port " + coordinator.port() + ".");
+                }
+
+                KuhnPokerCFR kp = coordinator.train(iterations);
+
+                for (Process process : processes) {
+                    try {
+                        process.waitFor(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the workers.", e);
+                    }
+                }
+
+                System.out.printf("Sync interval %s: %s, exploitability %.5f%n", syncInterval.strip(),
+                        coordinator.report(), kp.exploitability());
+            }
+        }
+    }
+}
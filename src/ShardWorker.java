@@ -0,0 +1,245 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A worker process of sharded training, see ShardCoordinator. The worker connects to the coordinator, trains its share
+ * of the iterations of a sampling algorithm on its own copy of the table, and after every share sends the changes of
+ * the table to the coordinator: the differences of the regret sums to the last broadcast, and the strategy sums and
+ * reach probability sums added since. It then receives the merged regret sums of every information set which any
+ * worker has changed, so that all workers continue with the same strategy.
+ * <p>
+ * Every message after the handshake is a frame consisting of the length of the payload, the length of the compressed
+ * payload and the payload compressed with Deflater. The records of the changes have the same layout as those of a
+ * Checkpoint: the key index of an information set followed by its regret sums, strategy sums and reach probability
+ * sum.
+ * @author Max Jappert
+ */
+public class ShardWorker {
+    static final int MAGIC = 0x43465344; // "CFSD"
+    static final int VERSION = 1;
+
+    final String host;
+    final int port;
+
+    /**
+     * @param host The host of the coordinator.
+     * @param port The port on which the coordinator listens.
+     */
+    public ShardWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects to the coordinator and trains until the coordinator sends the last broadcast.
+     * @throws IOException If the connection fails or the coordinator doesn't follow the protocol.
+     */
+    public void run() throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("The coordinator at " + host + ":" + port + " uses another protocol.");
+            }
+
+            KuhnPokerCFR.Algorithm algorithm = KuhnPokerCFR.Algorithm.valueOf(in.readUTF());
+            int numCards = in.readInt();
+            long seed = in.readLong();
+
+            KuhnPokerCFR kp = new KuhnPokerCFR(algorithm, Precision.FLOAT, UpdateRule.VANILLA, numCards);
+            kp.random = new Random(seed);
+            kp.store = kp.newStore();
+
+            int numActions = KuhnPokerCFR.numActions;
+            int numKeys = numCards * KuhnPokerCFR.numHistories;
+            int recordBytes = Integer.BYTES + (2 * numActions + 1) * Float.BYTES;
+
+            // The regret sums of the last broadcast, from which the changes of this worker are computed.
+            float[] synced = new float[numKeys * numActions];
+            ByteBuffer changes = ByteBuffer.allocate(2 * Long.BYTES + Integer.BYTES + numKeys * recordBytes);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            Inflater inflater = new Inflater();
+
+            int done = 0;
+            int iterations = in.readInt();
+
+            while (iterations > 0) {
+                long startTime = System.nanoTime();
+                long startNodes = kp.nodesVisited;
+
+                kp.nIterations = done + iterations;
+                kp.iterate(done, iterations);
+                done += iterations;
+
+                changes.clear();
+                changes.putLong(System.nanoTime() - startTime);
+                changes.putLong(kp.nodesVisited - startNodes);
+                changes.putInt(0);
+                changes.putInt(2 * Long.BYTES, collectChanges(kp.store, numKeys, synced, changes));
+                changes.flip();
+
+                writeFrame(out, changes, deflater);
+                out.flush();
+
+                iterations = in.readInt();
+                applyBroadcast(kp.store, readFrame(in, inflater), synced);
+            }
+
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    /**
+     * Appends a record for every information set which has changed since the last broadcast to the buffer, and sets
+     * the strategy sums and reach probability sums of the store to 0, since they are added to the coordinator's.
+     * @return The number of records.
+     */
+    private static int collectChanges(InfoSetStore store, int numKeys, float[] synced, ByteBuffer changes) {
+        int numActions = KuhnPokerCFR.numActions;
+        int count = 0;
+
+        for (int key = 0; key < numKeys; key++) {
+            int slot = key % KuhnPokerCFR.numHistories;
+            int index = store.findIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                    KuhnPokerCFR.slotBits(slot));
+
+            if (index == -1 || (store.getReachProbSum(index) == 0 && !regretsChanged(store, index, key, synced))) {
+                continue;
+            }
+
+            changes.putInt(key);
+
+            for (int a = 0; a < numActions; a++) {
+                changes.putFloat(store.getRegretSum(index, a) - synced[key * numActions + a]);
+            }
+
+            for (int a = 0; a < numActions; a++) {
+                changes.putFloat(store.getStrategySum(index, a));
+                store.setStrategySum(index, a, 0);
+            }
+
+            changes.putFloat(store.getReachProbSum(index));
+            store.setReachProbSum(index, 0);
+            count++;
+        }
+
+        return count;
+    }
+
+    private static boolean regretsChanged(InfoSetStore store, int index, int key, float[] synced) {
+        for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+            if (store.getRegretSum(index, a) != synced[key * KuhnPokerCFR.numActions + a]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Overwrites the regret sums of the store with the merged ones of the broadcast.
+     */
+    private static void applyBroadcast(InfoSetStore store, ByteBuffer broadcast, float[] synced) {
+        int count = broadcast.getInt();
+
+        for (int r = 0; r < count; r++) {
+            int key = broadcast.getInt();
+            int slot = key % KuhnPokerCFR.numHistories;
+            int index = store.getIndex(key / KuhnPokerCFR.numHistories, KuhnPokerCFR.slotDepth(slot),
+                    KuhnPokerCFR.slotBits(slot));
+
+            for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                float regret = broadcast.getFloat();
+                store.setRegretSum(index, a, regret);
+                synced[key * KuhnPokerCFR.numActions + a] = regret;
+            }
+        }
+    }
+
+    /**
+     * Compresses the remaining bytes of the payload and writes them as a frame.
+     * @return The number of bytes written.
+     */
+    static int writeFrame(DataOutputStream out, ByteBuffer payload, Deflater deflater) throws IOException {
+        int rawLength = payload.remaining();
+
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(rawLength / 2 + 64);
+        byte[] chunk = new byte[1 << 16];
+
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+
+        out.writeInt(rawLength);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+
+        return 2 * Integer.BYTES + compressed.size();
+    }
+
+    /**
+     * Reads a frame written by writeFrame(...).
+     * @return The payload.
+     */
+    static ByteBuffer readFrame(DataInputStream in, Inflater inflater) throws IOException {
+        int rawLength = in.readInt();
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+
+        byte[] raw = new byte[rawLength];
+        int length = 0;
+
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        try {
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("A message is corrupt.", e);
+        }
+
+        if (length != rawLength) {
+            throw new IOException("A message is shorter than announced.");
+        }
+
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Runs a worker, e.g. java -jar run.jar --worker localhost 5000.
+     * @param args The host and the port of the coordinator.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: <host> <port>");
+        }
+
+        new ShardWorker(args[0], Integer.parseInt(args[1])).run();
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the latency and the throughput of a StrategyServer. Every client thread sends its next request as soon as
+ * it has received the answer to the previous one, asking for the strategy (or a sampled action) at uniformly drawn
+ * information sets at which a player acts. After a warm-up, during which nothing is recorded, the latency of every
+ * request is recorded for the given duration, and the percentiles are computed from all of them.
+ * @author Max Jappert
+ */
+public class StrategyLoadTest {
+    final URI server;
+    final int numCards;
+    final String endpoint;
+    final int batchSize;
+    final int clients;
+
+    // The key indices of the information sets at which a player acts, and the queries describing them.
+    final int[] keys;
+    final String[] queries;
+
+    /**
+     * The latencies and the throughput of a load test.
+     */
+    public static class Result {
+        long requests;
+        long queries;
+        long errors;
+        long nanos;
+        // The latency of every request in nanoseconds, sorted.
+        long[] latencies;
+
+        /**
+         * @param p The percentile, in [0, 100].
+         * @return The latency below which p percent of the requests were answered, in nanoseconds.
+         */
+        public long percentile(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+
+            int rank = (int) Math.ceil(p / 100 * latencies.length);
+            return latencies[Math.max(rank - 1, 0)];
+        }
+
+        /**
+         * @return The number of answered queries per second, counting every query of a batch.
+         */
+        public double queriesPerSecond() {
+            return queries / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d queries) in %.1f s: %.0f queries/s, latency p50 %.1f us, "
+                            + "p99 %.1f us, max %.1f us, %d errors", requests, queries, nanos / 1e9,
+                    queriesPerSecond(), percentile(50) / 1e3, percentile(99) / 1e3, percentile(100) / 1e3, errors);
+        }
+    }
+
+    /**
+     * @param server The address of the server, e.g. http://127.0.0.1:8080.
+     * @param numCards The number of cards in the deck of the served model.
+     * @param endpoint "strategy", "action" or "batch".
+     * @param batchSize The number of queries per batch, only used for "batch".
+     * @param clients The number of client threads.
+     */
+    public StrategyLoadTest(URI server, int numCards, String endpoint, int batchSize, int clients) {
+        if (!endpoint.equals("strategy") && !endpoint.equals("action") && !endpoint.equals("batch")) {
+            throw new IllegalArgumentException("Unknown endpoint " + endpoint + ".");
+        }
+
+        if (batchSize < 1 || batchSize > StrategyServer.MAX_BATCH || clients < 1) {
+            throw new IllegalArgumentException("The batch size must be in [1, " + StrategyServer.MAX_BATCH
+                    + "] and there must be at least one client.");
+        }
+
+        this.server = server;
+        this.numCards = numCards;
+        this.endpoint = endpoint;
+        this.batchSize = endpoint.equals("batch") ? batchSize : 1;
+        this.clients = clients;
+
+        List<Integer> decisions = new ArrayList<>();
+
+        for (int card = 0; card < numCards; card++) {
+            for (int slot = 0; slot < KuhnPokerCFR.numHistories; slot++) {
+                if (!KuhnPokerCFR.isTerminal(KuhnPokerCFR.slotDepth(slot), KuhnPokerCFR.slotBits(slot))) {
+                    decisions.add(card * KuhnPokerCFR.numHistories + slot);
+                }
+            }
+        }
+
+        keys = decisions.stream().mapToInt(Integer::intValue).toArray();
+        queries = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            queries[i] = "?card=" + KuhnPokerCFR.cardString(keys[i] / KuhnPokerCFR.numHistories, numCards)
+                    + "&history=" + KuhnPokerCFR.historyString(keys[i] % KuhnPokerCFR.numHistories);
+        }
+    }
+
+    /**
+     * Runs the load test.
+     * @param warmupMillis How long the clients send requests before recording.
+     * @param durationMillis How long the latencies are recorded.
+     * @param seed The seed of the drawn information sets.
+     * @return The result.
+     */
+    public Result run(long warmupMillis, long durationMillis, long seed) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Callable<Result>> work = new ArrayList<>();
+
+        long start = System.nanoTime() + warmupMillis * 1_000_000;
+        long end = start + durationMillis * 1_000_000;
+
+        for (int c = 0; c < clients; c++) {
+            SplittableRandom random = root.split();
+            work.add(() -> runClient(client, random, start, end));
+        }
+
+        Result result = new Result();
+        List<long[]> latencies = new ArrayList<>();
+
+        try {
+            for (Future<Result> future : executor.invokeAll(work)) {
+                Result clientResult = future.get();
+                result.requests += clientResult.requests;
+                result.queries += clientResult.queries;
+                result.errors += clientResult.errors;
+                latencies.add(clientResult.latencies);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The load test was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A client failed during the load test.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        result.nanos = end - start;
+        result.latencies = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+
+        return result;
+    }
+
+    /**
+     * Sends requests until the end, recording those which are sent after the start.
+     */
+    private Result runClient(HttpClient client, SplittableRandom random, long start, long end) throws IOException,
+            InterruptedException {
+        Result result = new Result();
+        long[] latencies = new long[1024];
+        ByteBuffer body = ByteBuffer.allocate(batchSize * Integer.BYTES);
+
+        for (long sent = System.nanoTime(); sent < end; sent = System.nanoTime()) {
+            int query = random.nextInt(keys.length);
+            HttpRequest request;
+
+            if (endpoint.equals("batch")) {
+                body.clear();
+
+                for (int q = 0; q < batchSize; q++) {
+                    body.putInt(keys[random.nextInt(keys.length)]);
+                }
+
+                request = HttpRequest.newBuilder(server.resolve("/batch"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body.array())).build();
+            } else {
+                request = HttpRequest.newBuilder(server.resolve("/" + endpoint + queries[query])).build();
+            }
+
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long latency = System.nanoTime() - sent;
+
+            if (sent < start) {
+                continue;
+            }
+
+            boolean valid = response.statusCode() == 200 && (!endpoint.equals("batch")
+                    || response.body().length == batchSize * StrategyServer.BATCH_RECORD_BYTES);
+
+            if (!valid) {
+                result.errors++;
+            }
+
+            if (result.requests == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+            }
+
+            latencies[(int) result.requests++] = latency;
+            result.queries += batchSize;
+        }
+
+        result.latencies = Arrays.copyOf(latencies, (int) result.requests);
+
+        return result;
+    }
+
+    /**
+     * Runs a load test and prints the result, e.g.
+     * <pre>
+     * java -jar run.jar --load-test --clients 8 --endpoint batch --batch 256 --duration 10
+     * </pre>
+     * Without --port, a server for the model of --checkpoint (kuhn_poker.ckpt by default, trained if it doesn't exist)
+     * is started in this process with --threads handler threads. The other options are --host, --cards, --endpoint
+     * (strategy, action or batch), --warmup and --duration in seconds, and --seed.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = -1;
+        Path file = Path.of(Main.CHECKPOINT_FILE);
+        int numCards = KuhnPokerCFR.DEFAULT_NUM_CARDS;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        String endpoint = "strategy";
+        int batchSize = 100;
+        int clients = 4;
+        long warmupSeconds = 2;
+        long durationSeconds = 10;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+
+            if (args[i].equals("--host") && hasValue) {
+                host = args[++i];
+            } else if (args[i].equals("--port") && hasValue) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--checkpoint") && hasValue) {
+                file = Path.of(args[++i]);
+            } else if (args[i].equals("--cards") && hasValue) {
+                numCards = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads") && hasValue) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--endpoint") && hasValue) {
+                endpoint = args[++i];
+            } else if (args[i].equals("--batch") && hasValue) {
+                batchSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--clients") && hasValue) {
+                clients = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--warmup") && hasValue) {
+                warmupSeconds = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--duration") && hasValue) {
+                durationSeconds = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--seed") && hasValue) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i] + ". Usage: [--host <address>] "
+                        + "[--port <n>] [--checkpoint <file>] [--cards <n>] [--threads <n>] [--endpoint <name>] "
+                        + "[--batch <n>] [--clients <n>] [--warmup <s>] [--duration <s>] [--seed <n>]");
+            }
+        }
+
+        StrategyServer embedded = null;
+
+        if (port == -1) {
+            embedded = new StrategyServer(StrategyServer.loadPolicy(file, numCards, Main.KUHN_ITERATIONS), 0, threads);
+            port = embedded.port();
+        }
+
+        try {
+            StrategyLoadTest test = new StrategyLoadTest(URI.create("http://" + host + ":" + port), numCards, endpoint,
+                    batchSize, clients);
+
+            System.out.println(test.run(warmupSeconds * 1000, durationSeconds * 1000, seed));
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the average strategy of a trained model over HTTP, so that other services can ask for the action
+ * probabilities at an information set without training or holding the information sets themselves. The strategy is
+ * served from a FrozenPolicy, which never changes, so the handlers read it without any synchronisation.
+ * <p>
+ * The server runs on the JDK's com.sun.net.httpserver with a fixed pool of handler threads and answers three requests:
+ * <ul>
+ * <li>GET /strategy?card=K&amp;history=rrc returns the probabilities of the actions as JSON, e.g.
+ * {"infoSet":"K rrc","probabilities":[0.666667,0.333333]}.</li>
+ * <li>GET /action?card=K&amp;history=rrc samples an action from the strategy, e.g. {"infoSet":"K rrc","action":"b"}.</li>
+ * <li>POST /batch answers many queries at once in binary: the body is a sequence of key indices (card * numHistories
+ * + history slot, see KuhnPokerCFR.historySlot(...)) as big-endian ints, and the response holds for every query the
+ * probabilities of the actions as floats followed by a sampled action as an int.</li>
+ * </ul>
+ * Malformed queries and queries for information sets at which nobody acts are answered with status 400, and a batch
+ * may hold at most MAX_BATCH queries.
+ * @author Max Jappert
+ */
+public class StrategyServer implements Closeable {
+    // The number of bytes of the answer to a single query of a batch.
+    static final int BATCH_RECORD_BYTES = KuhnPokerCFR.numActions * Float.BYTES + Integer.BYTES;
+    static final int MAX_BATCH = 1 << 16;
+
+    static {
+        // Without TCP_NODELAY, the body of every response, which is written after the headers, waits for the delayed
+        // acknowledgement of the headers by the client, i.e. about 40 ms. The property is read when the first server
+        // of the JDK is created, so it has to be set before.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    final FrozenPolicy policy;
+
+    final HttpServer server;
+    final ExecutorService executor;
+
+    /**
+     * Starts a server on the loopback address.
+     * @param policy The served policy.
+     * @param port The port, or 0 for any free port.
+     * @param threads The number of threads handling requests.
+     */
+    public StrategyServer(FrozenPolicy policy, int port, int threads) throws IOException {
+        this(policy, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+    }
+
+    /**
+     * @param policy The served policy.
+     * @param address The address on which the server listens.
+     * @param threads The number of threads handling requests.
+     */
+    public StrategyServer(FrozenPolicy policy, InetSocketAddress address, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The server needs at least one thread.");
+        }
+
+        this.policy = policy;
+
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/strategy", exchange -> handle(exchange, "GET", this::strategy));
+        server.createContext("/action", exchange -> handle(exchange, "GET", this::action));
+        server.createContext("/batch", exchange -> handle(exchange, "POST", this::batch));
+        server.start();
+    }
+
+    /**
+     * Answers a request, or responds with status 405 if it uses another method and 400 if the query is invalid.
+     */
+    private static void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                respond(exchange, 405, "text/plain", "Only " + method + " is allowed.\n");
+                return;
+            }
+
+            try {
+                handler.handle(exchange);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+            }
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void strategy(HttpExchange exchange) throws IOException {
+        int key = parseKey(exchange);
+        StringBuilder json = new StringBuilder("{\"infoSet\":\"").append(policy.infoSetString(key))
+                .append("\",\"probabilities\":[");
+
+        for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+            json.append(a == 0 ? "" : ",").append(policy.probability(key, a));
+        }
+
+        respond(exchange, 200, "application/json", json.append("]}").toString());
+    }
+
+    private void action(HttpExchange exchange) throws IOException {
+        int key = parseKey(exchange);
+        char action = policy.sample(key, ThreadLocalRandom.current()) == 0 ? 'c' : 'b';
+
+        respond(exchange, 200, "application/json",
+                "{\"infoSet\":\"" + policy.infoSetString(key) + "\",\"action\":\"" + action + "\"}");
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BATCH * Integer.BYTES + 1);
+
+        if (body.length > MAX_BATCH * Integer.BYTES) {
+            throw new IllegalArgumentException("A batch can hold at most " + MAX_BATCH + " queries.");
+        } else if (body.length % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("The body of a batch must consist of ints.");
+        }
+
+        ByteBuffer queries = ByteBuffer.wrap(body);
+        ByteBuffer answers = ByteBuffer.allocate(body.length / Integer.BYTES * BATCH_RECORD_BYTES);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int q = 0; queries.hasRemaining(); q++) {
+            int key = queries.getInt();
+
+            if (!policy.isDecision(key)) {
+                throw new IllegalArgumentException("Query " + q + " has the key index " + key
+                        + ", which isn't that of an information set at which a player acts.");
+            }
+
+            for (int a = 0; a < KuhnPokerCFR.numActions; a++) {
+                answers.putFloat(policy.probability(key, a));
+            }
+
+            answers.putInt(policy.sample(key, random));
+        }
+
+        respond(exchange, 200, "application/octet-stream", answers.array());
+    }
+
+    /**
+     * @return The key index of the information set given by the parameters card and history of the query.
+     */
+    private int parseKey(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        String card = null;
+        String history = null;
+
+        for (String parameter : query == null ? new String[0] : query.split("&")) {
+            int separator = parameter.indexOf('=');
+
+            if (separator == -1) {
+                continue;
+            }
+
+            String name = parameter.substring(0, separator);
+            String value = URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+
+            if (name.equals("card")) {
+                card = value;
+            } else if (name.equals("history")) {
+                history = value;
+            }
+        }
+
+        if (card == null || history == null) {
+            throw new IllegalArgumentException("The query needs the parameters card and history.");
+        }
+
+        return policy.id(card, history);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return The port on which the server listens.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Loads a trained model from the checkpoint file. If the file doesn't exist yet, the model is trained with CFR and
+     * saved first, as by the menu of Main.
+     * @param file The checkpoint file.
+     * @param numCards The number of cards in the deck.
+     * @param iterations The number of iterations if the model has to be trained.
+     * @return The average strategy of the model, frozen.
+     */
+    public static FrozenPolicy loadPolicy(Path file, int numCards, int iterations) throws IOException {
+        KuhnPokerCFR kp = new KuhnPokerCFR(KuhnPokerCFR.Algorithm.CFR, Precision.FLOAT, UpdateRule.VANILLA, numCards);
+        Checkpoint checkpoint = new Checkpoint(file, numCards);
+
+        if (checkpoint.exists()) {
+            kp.load(checkpoint);
+        } else {
+            kp.train(iterations, checkpoint, iterations);
+        }
+
+        return FrozenPolicy.freeze(kp.store, numCards);
+    }
+
+    /**
+     * Serves the model of a checkpoint until the process is stopped, e.g.
+     * <pre>
+     * java -jar run.jar --serve --checkpoint kuhn_poker.ckpt --port 8080
+     * </pre>
+     * The other options are --cards, --iterations (if the checkpoint has to be trained first), --threads and --host
+     * (the loopback address by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(Main.CHECKPOINT_FILE);
+        int numCards = KuhnPokerCFR.DEFAULT_NUM_CARDS;
+        int iterations = Main.KUHN_ITERATIONS;
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int port = 8080;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+
+            if (args[i].equals("--checkpoint") && hasValue) {
+                file = Path.of(args[++i]);
+            } else if (args[i].equals("--cards") && hasValue) {
+                numCards = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--iterations") && hasValue) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--host") && hasValue) {
+                host = args[++i];
+            } else if (args[i].equals("--port") && hasValue) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads") && hasValue) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i] + ". Usage: [--checkpoint <file>] "
+                        + "[--cards <n>] [--iterations <n>] [--host <address>] [--port <n>] [--threads <n>]");
+            }
+        }
+
+        StrategyServer server = new StrategyServer(loadPolicy(file, numCards, iterations),
+                new InetSocketAddress(host, port), threads);
+
+        System.out.println("Serving " + file + " on " + host + ":" + server.port() + ".");
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the running ones and stops the handler threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
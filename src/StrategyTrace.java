@@ -0,0 +1,137 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Traces the current strategy and the cumulative regrets of selected information sets during training, e.g. to plot
+ * how the strategy of "K rr" converges. For every selected information set and action there are two columns, e.g.
+ * "K rr strategy c" and "K rr regret c". The values are collected by the training thread after every iteration which
+ * isn't skipped by the decimation, and written to the file in the background by a TraceWriter.
+ * @author Max Jappert
+ */
+public class StrategyTrace implements Closeable {
+    final TraceWriter writer;
+
+    // The card, depth and actions of every selected information set, see KuhnPokerCFR.historySlot(...).
+    final int[] cards;
+    final int[] depths;
+    final int[] bits;
+
+    // Reused for every record, so that tracing doesn't allocate.
+    final float[] record;
+
+    /**
+     * Same as StrategyTrace(path, format, keys, decimation, KuhnPokerCFR.DEFAULT_NUM_CARDS).
+     */
+    public StrategyTrace(Path path, TraceWriter.Format format, String[] keys, int decimation) throws IOException {
+        this(path, format, keys, decimation, KuhnPokerCFR.DEFAULT_NUM_CARDS);
+    }
+
+    /**
+     * @param path The file to which the trace is written.
+     * @param format The format of the file.
+     * @param keys The keys of the traced information sets, e.g. "K rr".
+     * @param decimation Only every decimation-th iteration is traced.
+     * @param numCards The number of cards in the deck of the trained game, which determines the labels of the cards
+     *                 (see KuhnPokerCFR.cardString(...)).
+     */
+    public StrategyTrace(Path path, TraceWriter.Format format, String[] keys, int decimation, int numCards)
+            throws IOException {
+        int numActions = KuhnPokerCFR.numActions;
+
+        cards = new int[keys.length];
+        depths = new int[keys.length];
+        bits = new int[keys.length];
+
+        String[] columns = new String[keys.length * 2 * numActions];
+
+        for (int k = 0; k < keys.length; k++) {
+            parseKey(keys[k], k, numCards);
+
+            for (int a = 0; a < numActions; a++) {
+                String action = a == 0 ? "c" : "b";
+                columns[(k * 2) * numActions + a] = keys[k] + " strategy " + action;
+                columns[(k * 2 + 1) * numActions + a] = keys[k] + " regret " + action;
+            }
+        }
+
+        record = new float[columns.length];
+        writer = new TraceWriter(path, format, columns, decimation, 1 << 16);
+    }
+
+    /**
+     * Splits a key such as "K rrcb" into the card, the depth and the actions of its history.
+     */
+    private void parseKey(String key, int k, int numCards) {
+        String[] parts = key.split(" ");
+
+        if (parts.length != 2 || !parts[1].startsWith("rr")) {
+            throw new IllegalArgumentException("\"" + key + "\" is not an information set key such as \"K rr\".");
+        }
+
+        cards[k] = -1;
+
+        for (int card = 0; card < numCards; card++) {
+            if (KuhnPokerCFR.cardString(card, numCards).equals(parts[0])) {
+                cards[k] = card;
+            }
+        }
+
+        if (cards[k] == -1) {
+            throw new IllegalArgumentException("\"" + key + "\" doesn't start with a card.");
+        }
+
+        String history = parts[1].substring(2);
+        depths[k] = history.length();
+
+        for (int i = 0; i < history.length(); i++) {
+            if (history.charAt(i) == 'b') {
+                bits[k] |= 1 << i;
+            } else if (history.charAt(i) != 'c') {
+                throw new IllegalArgumentException("\"" + key + "\" contains an action other than c and b.");
+            }
+        }
+
+        if (depths[k] >= KuhnPokerCFR.maxDepth || KuhnPokerCFR.isTerminal(depths[k], bits[k])) {
+            throw new IllegalArgumentException("Nobody acts after the history of \"" + key + "\".");
+        }
+    }
+
+    /**
+     * Records the values of the selected information sets after the given iteration, unless the iteration is skipped
+     * by the decimation. Information sets which haven't been visited yet are recorded with the uniform strategy and no
+     * regret.
+     * @param store The store containing the information sets.
+     * @param iteration The iteration which has just finished, starting at 1.
+     */
+    public void record(InfoSetStore store, int iteration) {
+        if (!writer.shouldRecord(iteration)) {
+            return;
+        }
+
+        int numActions = KuhnPokerCFR.numActions;
+
+        for (int k = 0; k < cards.length; k++) {
+            int index = store.findIndex(cards[k], depths[k], bits[k]);
+
+            for (int a = 0; a < numActions; a++) {
+                record[(k * 2) * numActions + a] = index == -1 ? 1.0f / numActions : store.getStrategy(index, a);
+                record[(k * 2 + 1) * numActions + a] = index == -1 ? 0 : store.getRegretSum(index, a);
+            }
+        }
+
+        writer.record(iteration, record);
+    }
+
+    /**
+     * @return The number of records dropped because the writer couldn't keep up, see TraceWriter.dropped().
+     */
+    public long dropped() {
+        return writer.dropped();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes a trace of values per iteration, e.g. the strategies of some information sets during training, to a file
+ * without slowing down the thread which produces the values. Every record consists of the iteration and one float per
+ * column. The producing thread copies its records into a bounded ring buffer, from which a background thread writes
+ * them to the file. The buffer is lock-free, since there is exactly one producer and one consumer: each side only
+ * writes its own position and publishes it with a release store, and the producer never waits for the writer. If the
+ * buffer is full, the record is dropped and counted (see dropped()), so a slow disk can't stall training.
+ * <p>
+ * Only every decimation-th iteration is recorded. The file is written either as CSV with a header line or in a compact
+ * binary format: the magic number, the format version, the number of columns and the column names (see
+ * DataOutputStream.writeUTF(...)), followed by the records, each consisting of the iteration as a long and the values
+ * as floats.
+ * @author Max Jappert
+ */
+public class TraceWriter implements Closeable {
+    static final int MAGIC = 0x43465452; // "CFTR"
+    static final int VERSION = 1;
+
+    /**
+     * The formats in which the trace can be written.
+     */
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    final Path path;
+    final Format format;
+    final String[] columns;
+    final int decimation;
+
+    final int capacity;
+    final long[] iterations;
+    final float[] values;
+
+    // The number of records written into the buffer by the producer and taken out of it by the writer.
+    final AtomicLong head = new AtomicLong();
+    final AtomicLong tail = new AtomicLong();
+    // The producer's last read of tail, so that it only has to read the writer's position when the buffer seems full.
+    long cachedTail = 0;
+    long dropped = 0;
+
+    volatile boolean closed = false;
+    final Thread writer;
+    IOException error;
+
+    /**
+     * Creates the file and starts the background writer.
+     * @param path The file to which the trace is written. An existing file is replaced.
+     * @param format The format of the file.
+     * @param columns The names of the values of a record.
+     * @param decimation Only iterations which are a multiple of this number are recorded.
+     * @param capacity The number of records the buffer can hold.
+     */
+    public TraceWriter(Path path, Format format, String[] columns, int decimation, int capacity) throws IOException {
+        if (decimation < 1 || capacity < 1) {
+            throw new IllegalArgumentException("The decimation and the capacity must be positive.");
+        }
+
+        this.path = path;
+        this.format = format;
+        this.columns = columns.clone();
+        this.decimation = decimation;
+        this.capacity = capacity;
+        this.iterations = new long[capacity];
+        this.values = new float[capacity * columns.length];
+
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+
+        writer = new Thread(() -> drain(out), "trace-writer-" + path.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @param iteration The iteration.
+     * @return True if the given iteration should be recorded, see the decimation.
+     */
+    public boolean shouldRecord(long iteration) {
+        return iteration % decimation == 0;
+    }
+
+    /**
+     * Hands a record to the background writer. Must only be called by one thread at a time. The values are copied, so
+     * the array can be reused right away.
+     * @param iteration The iteration.
+     * @param record One value per column.
+     * @return False if the buffer was full and the record has been dropped.
+     */
+    public boolean record(long iteration, float[] record) {
+        long h = head.get();
+
+        if (h - cachedTail >= capacity) {
+            cachedTail = tail.get();
+
+            if (h - cachedTail >= capacity) {
+                dropped++;
+                return false;
+            }
+        }
+
+        int slot = (int) (h % capacity);
+        iterations[slot] = iteration;
+        System.arraycopy(record, 0, values, slot * columns.length, columns.length);
+
+        // The release store makes the record visible to the writer before the new position.
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * @return The number of records dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Runs on the background thread: writes the header and then every record as soon as it is in the buffer, until
+     * the trace is closed and the buffer is empty.
+     */
+    private void drain(OutputStream out) {
+        try (DataOutputStream data = new DataOutputStream(out);
+             Writer text = new BufferedWriter(new OutputStreamWriter(data, StandardCharsets.US_ASCII), 1 << 16)) {
+            writeHeader(data, text);
+
+            StringBuilder line = new StringBuilder();
+
+            while (true) {
+                long t = tail.get();
+                long h = head.get();
+
+                if (t == h) {
+                    if (closed && head.get() == t) {
+                        break;
+                    }
+
+                    // Sleeping for a millisecond keeps the writer from competing with training for a core, while the
+                    // buffer is large enough to hold all records produced in the meantime.
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+
+                for (; t < h; t++) {
+                    int slot = (int) (t % capacity);
+                    int offset = slot * columns.length;
+
+                    if (format == Format.CSV) {
+                        line.setLength(0);
+                        line.append(iterations[slot]);
+
+                        for (int c = 0; c < columns.length; c++) {
+                            line.append(',').append(values[offset + c]);
+                        }
+
+                        text.append(line).append('\n');
+                    } else {
+                        data.writeLong(iterations[slot]);
+
+                        for (int c = 0; c < columns.length; c++) {
+                            data.writeFloat(values[offset + c]);
+                        }
+                    }
+
+                    // The slot may be overwritten by the producer as soon as the new position is visible.
+                    tail.lazySet(t + 1);
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void writeHeader(DataOutputStream data, Writer text) throws IOException {
+        if (format == Format.CSV) {
+            text.write("iteration");
+
+            for (String column : columns) {
+                text.write(',');
+                text.write(column);
+            }
+
+            text.write('\n');
+        } else {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(columns.length);
+
+            for (String column : columns) {
+                data.writeUTF(column);
+            }
+        }
+    }
+
+    /**
+     * Waits until the writer has written every record in the buffer and closes the file.
+     * @throws IOException If writing the file failed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the trace " + path + ".", e);
+        }
+
+        if (error != null) {
+            throw new IOException("Writing the trace " + path + " failed.", error);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a batch of training iterations, committed by Metrics.recordBatch(...). Its duration
+ * is the time the batch took.
+ * @author Max Jappert
+ */
+@Name("cfr.TrainingBatch")
+@Label("Training Batch")
+@Category("CFR")
+@Description("A batch of training iterations of a CFR solver")
+@StackTrace(false)
+public class TrainingBatchEvent extends Event {
+    @Label("Game")
+    String game;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("First Iteration")
+    long firstIteration;
+
+    @Label("Iterations")
+    int iterations;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Information Sets Created")
+    long infoSetsCreated;
+
+    @Label("Regret Updates")
+    long regretUpdates;
+
+    @Label("Allocated Bytes")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Exploitability")
+    @Description("The latest exploitability of the average strategy, or NaN if it hasn't been computed")
+    float exploitability;
+}
@@ -0,0 +1,118 @@
+/**
+ * A rule describing how the cumulative regrets and the strategy sum of an information set are updated at the end of an
+ * iteration. Apart from VANILLA, every rule is an instance of Discounted CFR as in Brown and Sandholm (2019): after
+ * iteration t, positive regrets are multiplied by t^alpha / (t^alpha + 1), negative regrets by t^beta / (t^beta + 1),
+ * and the contribution of iteration t to the average strategy is weighted by t^gamma.
+ * @author Max Jappert
+ */
+public class UpdateRule {
+
+    /**
+     * The rule of the original implementation: Only the positive part of each regret is accumulated, the strategy of
+     * player 1 is recomputed right after visiting an information set, and all iterations are weighted equally.
+     */
+    public static final UpdateRule VANILLA = new UpdateRule("Vanilla", Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY, 0, false, true);
+
+    final String name;
+    final double alpha;
+    final double beta;
+    final double gamma;
+    // Should the players' regrets be updated in separate traversals, one player after the other?
+    final boolean alternating;
+    // Should only the positive part of each regret be accumulated (see VANILLA)?
+    final boolean clipped;
+
+    private UpdateRule(String name, double alpha, double beta, double gamma, boolean alternating, boolean clipped) {
+        this.name = name;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.alternating = alternating;
+        this.clipped = clipped;
+    }
+
+    /**
+     * CFR+ as in Tammelin (2014): Cumulative regrets are floored at 0 after every iteration, the players are updated
+     * alternately and iteration t is weighted by t in the average strategy.
+     */
+    public static UpdateRule cfrPlus() {
+        return new UpdateRule("CFR+", Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1, true, false);
+    }
+
+    /**
+     * Linear CFR: Iteration t is weighted by t, both in the regrets and in the average strategy.
+     */
+    public static UpdateRule linear() {
+        return new UpdateRule("Linear CFR", 1, 1, 1, false, false);
+    }
+
+    /**
+     * Discounted CFR with the given parameters. Brown and Sandholm recommend alpha = 1.5, beta = 0 and gamma = 2.
+     */
+    public static UpdateRule discounted(double alpha, double beta, double gamma) {
+        return new UpdateRule("DCFR(" + alpha + ", " + beta + ", " + gamma + ")", alpha, beta, gamma, false, false);
+    }
+
+    /**
+     * @param name "vanilla", "cfr+", "linear" or "dcfr" (Discounted CFR with the recommended parameters), ignoring
+     *             case.
+     * @return The rule with the given name.
+     */
+    public static UpdateRule forName(String name) {
+        switch (name.toLowerCase()) {
+            case "vanilla":
+                return VANILLA;
+            case "cfr+":
+                return cfrPlus();
+            case "linear":
+                return linear();
+            case "dcfr":
+                return discounted(1.5, 0, 2);
+            default:
+                throw new IllegalArgumentException("Unknown update rule " + name + ".");
+        }
+    }
+
+    /**
+     * @param iteration The iteration t, starting at 1.
+     * @return The factor by which the positive cumulative regrets are multiplied after the iteration.
+     */
+    public float positiveRegretFactor(int iteration) {
+        return regretFactor(alpha, iteration);
+    }
+
+    /**
+     * @param iteration The iteration t, starting at 1.
+     * @return The factor by which the negative cumulative regrets are multiplied after the iteration.
+     */
+    public float negativeRegretFactor(int iteration) {
+        return regretFactor(beta, iteration);
+    }
+
+    /**
+     * Multiplying the strategy sum by ((t - 1) / t)^gamma before adding the strategy of iteration t weights every
+     * iteration k by k^gamma (up to a common factor, which cancels out when normalizing).
+     * @param iteration The iteration t, starting at 1.
+     * @return The factor by which the strategy sum is multiplied before adding the strategy of the iteration.
+     */
+    public float strategySumFactor(int iteration) {
+        return (float) Math.pow((iteration - 1.0) / iteration, gamma);
+    }
+
+    private static float regretFactor(double exponent, int iteration) {
+        if (exponent == Double.POSITIVE_INFINITY) {
+            return 1;
+        } else if (exponent == Double.NEGATIVE_INFINITY) {
+            return 0;
+        }
+
+        double power = Math.pow(iteration, exponent);
+        return (float) (power / (power + 1));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}